@@ -0,0 +1,402 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compact binary encoding of Json trees, used by configuration snapshots.
+ * <p>
+ * Every value starts with a one byte tag. Scalars have a fixed size or are prefixed by their length, and containers
+ * are prefixed by the length of their content, so any value can be skipped without being decoded. Integers are big
+ * endian, and strings (including object keys) are UTF-8. The Jackson node type of every number is preserved.
+ * <pre>
+ * value  := NULL | FALSE | TRUE | SHORT i16 | INT i32 | LONG i64 | FLOAT f32 | DOUBLE f64
+ *         | BIG_INTEGER len bytes | BIG_DECIMAL scale len bytes | STRING len utf8 | BINARY len bytes
+ *         | ARRAY len count value* | OBJECT len count (keylen utf8 value)*
+ * </pre>
+ */
+final class BinaryJson {
+
+    static final byte NULL = 0;
+    static final byte FALSE = 1;
+    static final byte TRUE = 2;
+    static final byte SHORT = 3;
+    static final byte INT = 4;
+    static final byte LONG = 5;
+    static final byte FLOAT = 6;
+    static final byte DOUBLE = 7;
+    static final byte BIG_INTEGER = 8;
+    static final byte BIG_DECIMAL = 9;
+    static final byte STRING = 10;
+    static final byte BINARY = 11;
+    static final byte ARRAY = 12;
+    static final byte OBJECT = 13;
+
+    // decimals are encoded as is, so they are decoded as is
+    private static final JsonNodeFactory FACTORY = JsonNodeFactory.withExactBigDecimals(true);
+
+    private BinaryJson() {
+    }
+
+    /**
+     * @param node   The value to encode
+     * @param output Where to append the encoded value
+     */
+    static void encode(JsonNode node, Output output) {
+        switch (node.getNodeType()) {
+            case NULL:
+            case MISSING:
+                output.writeByte(NULL);
+                break;
+            case BOOLEAN:
+                output.writeByte(node.booleanValue() ? TRUE : FALSE);
+                break;
+            case NUMBER:
+                encodeNumber(node, output);
+                break;
+            case STRING:
+                output.writeByte(STRING);
+                output.writeBytes(node.textValue().getBytes(StandardCharsets.UTF_8));
+                break;
+            case BINARY:
+                output.writeByte(BINARY);
+                output.writeBytes(((BinaryNode) node).binaryValue());
+                break;
+            case ARRAY: {
+                output.writeByte(ARRAY);
+                final int length = output.reserveInt();
+                output.writeInt(node.size());
+                for (JsonNode element : node) {
+                    encode(element, output);
+                }
+                output.patchLength(length);
+                break;
+            }
+            case OBJECT: {
+                output.writeByte(OBJECT);
+                final int length = output.reserveInt();
+                output.writeInt(node.size());
+                for (final Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+                    final Map.Entry<String, JsonNode> field = fields.next();
+                    output.writeBytes(field.getKey().getBytes(StandardCharsets.UTF_8));
+                    encode(field.getValue(), output);
+                }
+                output.patchLength(length);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported Json node: " + node.getNodeType());
+        }
+    }
+
+    private static void encodeNumber(JsonNode node, Output output) {
+        switch (node.numberType()) {
+            case INT:
+                if (node.isShort()) {
+                    output.writeByte(SHORT);
+                    output.writeShort(node.shortValue());
+                } else {
+                    output.writeByte(INT);
+                    output.writeInt(node.intValue());
+                }
+                break;
+            case LONG:
+                output.writeByte(LONG);
+                output.writeLong(node.longValue());
+                break;
+            case FLOAT:
+                output.writeByte(FLOAT);
+                output.writeInt(Float.floatToRawIntBits(node.floatValue()));
+                break;
+            case DOUBLE:
+                output.writeByte(DOUBLE);
+                output.writeLong(Double.doubleToRawLongBits(node.doubleValue()));
+                break;
+            case BIG_INTEGER:
+                output.writeByte(BIG_INTEGER);
+                output.writeBytes(node.bigIntegerValue().toByteArray());
+                break;
+            case BIG_DECIMAL:
+                output.writeByte(BIG_DECIMAL);
+                output.writeInt(node.decimalValue().scale());
+                output.writeBytes(node.decimalValue().unscaledValue().toByteArray());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported number: " + node.numberType());
+        }
+    }
+
+    /**
+     * @param buffer   The encoded values (only read with absolute gets, so it can be shared between threads)
+     * @param position The position of the value tag
+     * @return The decoded value
+     */
+    static JsonNode decode(ByteBuffer buffer, int position) {
+        final byte tag = buffer.get(position);
+        switch (tag) {
+            case NULL:
+                return FACTORY.nullNode();
+            case FALSE:
+                return FACTORY.booleanNode(false);
+            case TRUE:
+                return FACTORY.booleanNode(true);
+            case SHORT:
+                return FACTORY.numberNode(buffer.getShort(position + 1));
+            case INT:
+                return FACTORY.numberNode(buffer.getInt(position + 1));
+            case LONG:
+                return FACTORY.numberNode(buffer.getLong(position + 1));
+            case FLOAT:
+                return FACTORY.numberNode(Float.intBitsToFloat(buffer.getInt(position + 1)));
+            case DOUBLE:
+                return FACTORY.numberNode(Double.longBitsToDouble(buffer.getLong(position + 1)));
+            case BIG_INTEGER:
+                return FACTORY.numberNode(new BigInteger(bytes(buffer, position + 1)));
+            case BIG_DECIMAL:
+                return FACTORY.numberNode(new BigDecimal(new BigInteger(bytes(buffer, position + 5)), buffer.getInt(position + 1)));
+            case STRING:
+                return FACTORY.textNode(string(buffer, position + 1));
+            case BINARY:
+                return FACTORY.binaryNode(bytes(buffer, position + 1));
+            case ARRAY: {
+                final ArrayNode result = FACTORY.arrayNode();
+                final int count = buffer.getInt(position + 5);
+                int current = position + 9;
+                for (int i = 0; i < count; i++) {
+                    result.add(decode(buffer, current));
+                    current += size(buffer, current);
+                }
+                return result;
+            }
+            case OBJECT: {
+                final ObjectNode result = FACTORY.objectNode();
+                final int count = buffer.getInt(position + 5);
+                int current = position + 9;
+                for (int i = 0; i < count; i++) {
+                    final String key = string(buffer, current);
+                    current += 4 + buffer.getInt(current);
+                    result.set(key, decode(buffer, current));
+                    current += size(buffer, current);
+                }
+                return result;
+            }
+            default:
+                throw new IllegalStateException("Invalid Json tag " + tag + " at " + position);
+        }
+    }
+
+    /**
+     * @param buffer   The encoded values
+     * @param position The position of the value tag
+     * @param path     The UTF-8 encoded keys to follow
+     * @return The position of the value at path, or -1 if not found (or not an object on the way)
+     */
+    static int find(ByteBuffer buffer, int position, byte[][] path) {
+        int current = position;
+        for (byte[] key : path) {
+            current = find(buffer, current, key);
+            if (current < 0) {
+                break;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Looks up a key without decoding the object: every key is compared in place, and every value is skipped.
+     *
+     * @param buffer   The encoded values
+     * @param position The position of the value tag
+     * @param key      The UTF-8 encoded key
+     * @return The position of the value of the key, or -1 if not found (or not an object)
+     */
+    static int find(ByteBuffer buffer, int position, byte[] key) {
+        if (buffer.get(position) != OBJECT) {
+            return -1;
+        }
+
+        final int count = buffer.getInt(position + 5);
+        int current = position + 9;
+        for (int i = 0; i < count; i++) {
+            final int keyLength = buffer.getInt(current);
+            final boolean matches = keyLength == key.length && equals(buffer, current + 4, key);
+            current += 4 + keyLength;
+            if (matches) {
+                return current;
+            }
+            current += size(buffer, current);
+        }
+        return -1;
+    }
+
+    private static boolean equals(ByteBuffer buffer, int position, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(position + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param buffer   The encoded values
+     * @param position The position of the value tag
+     * @return The keys of the object at position (empty if not an object)
+     */
+    static List<String> keys(ByteBuffer buffer, int position) {
+        if (buffer.get(position) != OBJECT) {
+            return Collections.emptyList();
+        }
+
+        final int count = buffer.getInt(position + 5);
+        final List<String> result = new ArrayList<>(count);
+        int current = position + 9;
+        for (int i = 0; i < count; i++) {
+            result.add(string(buffer, current));
+            current += 4 + buffer.getInt(current);
+            current += size(buffer, current);
+        }
+        return result;
+    }
+
+    /**
+     * @param buffer   The encoded values
+     * @param position The position of the value tag
+     * @return The encoded size of the value, in bytes
+     */
+    static int size(ByteBuffer buffer, int position) {
+        final byte tag = buffer.get(position);
+        switch (tag) {
+            case NULL:
+            case FALSE:
+            case TRUE:
+                return 1;
+            case SHORT:
+                return 3;
+            case INT:
+            case FLOAT:
+                return 5;
+            case LONG:
+            case DOUBLE:
+                return 9;
+            case BIG_DECIMAL:
+                return 9 + buffer.getInt(position + 5);
+            case BIG_INTEGER:
+            case STRING:
+            case BINARY:
+            case ARRAY:
+            case OBJECT:
+                return 5 + buffer.getInt(position + 1);
+            default:
+                throw new IllegalStateException("Invalid Json tag " + tag + " at " + position);
+        }
+    }
+
+    /**
+     * @return The length prefixed bytes at position
+     */
+    static byte[] bytes(ByteBuffer buffer, int position) {
+        final byte[] result = new byte[buffer.getInt(position)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = buffer.get(position + 4 + i);
+        }
+        return result;
+    }
+
+    /**
+     * @return The length prefixed UTF-8 string at position
+     */
+    static String string(ByteBuffer buffer, int position) {
+        return new String(bytes(buffer, position), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Growable big endian byte array.
+     */
+    static final class Output {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensure(int count) {
+            if (size + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + count));
+            }
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeShort(int value) {
+            ensure(2);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            putInt(size, value);
+            size += 4;
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        /**
+         * Writes the length, then the bytes.
+         */
+        void writeBytes(byte[] value) {
+            writeInt(value.length);
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        /**
+         * @return The position of a length to be patched once the content is written
+         */
+        int reserveInt() {
+            writeInt(0);
+            return size - 4;
+        }
+
+        /**
+         * @param position The position returned by {@link #reserveInt()}, followed by the content written since
+         */
+        void patchLength(int position) {
+            putInt(position, size - position - 4);
+        }
+
+        private void putInt(int position, int value) {
+            bytes[position] = (byte) (value >>> 24);
+            bytes[position + 1] = (byte) (value >>> 16);
+            bytes[position + 2] = (byte) (value >>> 8);
+            bytes[position + 3] = (byte) value;
+        }
+    }
+}
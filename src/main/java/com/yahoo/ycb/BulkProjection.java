@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Projection of a path for many contexts at once.
+ * <p>
+ * Contexts are grouped by the value of the first tree dimension, and the value of every subtree is computed once
+ * for all the contexts sharing the values of its level and below. Groups may be projected in parallel.
+ */
+class BulkProjection {
+
+    private final LookupTree tree;
+    private final String[] path;
+    private final List<int[]> contexts;
+    private final List<int[]> groups;
+    private final JsonNode[] values;
+    private final ConcurrentMap<LookupTree.Subtree, JsonNode> memo = new ConcurrentHashMap<>();
+
+    private BulkProjection(LookupTree tree, String[] path, List<int[]> contexts) {
+        this.tree = tree;
+        this.path = path;
+        this.contexts = contexts;
+        this.groups = group(contexts);
+        this.values = new JsonNode[contexts.size()];
+    }
+
+    /**
+     * @param tree     The lookup tree
+     * @param path     The path to project
+     * @param contexts The ordinals of each context, in tree order
+     * @param pool     Projects the groups of contexts in parallel, or null to project them in the calling thread
+     * @return The value of the path in each context, in the same order as contexts
+     */
+    static List<JsonNode> project(LookupTree tree, String[] path, List<int[]> contexts, ForkJoinPool pool) {
+        final BulkProjection projection = new BulkProjection(tree, path, contexts);
+        if (pool == null || projection.groups.size() < 2) {
+            for (int[] group : projection.groups) {
+                projection.project(group);
+            }
+        } else {
+            pool.invoke(projection.new GroupTask(0, projection.groups.size()));
+        }
+        return Arrays.asList(projection.values);
+    }
+
+    /**
+     * @return The indexes of the contexts sharing the same first value, by group
+     */
+    private static List<int[]> group(List<int[]> contexts) {
+        final Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < contexts.size(); i++) {
+            final int[] context = contexts.get(i);
+            groups.computeIfAbsent(context.length == 0 ? 0 : context[0], value -> new ArrayList<>()).add(i);
+        }
+
+        final List<int[]> result = new ArrayList<>(groups.size());
+        for (List<Integer> group : groups.values()) {
+            result.add(group.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return result;
+    }
+
+    private void project(int[] group) {
+        for (int index : group) {
+            final JsonNode value = tree.project(contexts.get(index), 0, path, memo);
+            values[index] = value == null ? NullNode.getInstance() : value;
+        }
+    }
+
+    private final class GroupTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        GroupTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                project(groups.get(from));
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new GroupTask(from, middle), new GroupTask(middle, to));
+        }
+    }
+}
@@ -8,6 +8,7 @@ package com.yahoo.ycb;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * A Bundle is an association between a Context and a Delta.
@@ -34,4 +35,21 @@ public class Bundle {
     public JsonNode getDelta() {
         return delta;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Bundle)) {
+            return false;
+        }
+        final Bundle other = (Bundle) o;
+        return Objects.equals(context, other.context) && Objects.equals(delta, other.delta);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(context, delta);
+    }
 }
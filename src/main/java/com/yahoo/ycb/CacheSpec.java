@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Specification of the cache of projected values of a Configuration.
+ * <p>
+ * All projections of a configuration share a single cache, bounded by a global memory budget. Each cached
+ * value is weighted by an estimation of its size, so a few large values and many small values compete for
+ * the same budget. Merged values are weighted by the layers they stack, not by the values of the configuration
+ * they reference; otherwise the estimation does not account for sub trees shared between values (or with the
+ * configuration itself), therefore the budget is an upper bound of the memory actually retained.
+ * <p>
+ * Contexts matching the same leaves of the configuration for a path project the same value. Such values, when
+ * merged from several leaves, are also kept in a separate cache with its own budget, so the other contexts reuse the
+ * value instead of merging it again (and the cached values of these contexts share a single copy). A shared value
+ * is weighted once, in the budget of the shared values: the caches of the contexts only pay for their reference.
+ * <p>
+ * Instances are immutable, and created through {@link #builder()}.
+ */
+public final class CacheSpec {
+
+    /**
+     * The default memory budget: 16 MiB
+     */
+    public static final long DEFAULT_MAXIMUM_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * The default memory budget of the values shared between contexts: 4 MiB
+     */
+    public static final long DEFAULT_MAXIMUM_SHARED_BYTES = 4L * 1024 * 1024;
+
+    private static final CacheSpec DEFAULTS = builder().build();
+
+    /**
+     * How values are chosen to be evicted (or not admitted) when the memory budget is exhausted.
+     */
+    public enum EvictionPolicy {
+        /**
+         * Evict the least recently used value.
+         */
+        LRU,
+
+        /**
+         * Evict the least recently used value, but only if the new value is estimated to be accessed more
+         * frequently than the value to be evicted (otherwise the new value is not cached). This protects the
+         * cache from being flushed by contexts and paths that are rarely used.
+         */
+        FREQUENCY
+    }
+
+    private final long maximumBytes;
+    private final long maximumSharedBytes;
+    private final EvictionPolicy evictionPolicy;
+    private final long expireAfterAccessNanos;
+
+    private CacheSpec(Builder builder) {
+        this.maximumBytes = builder.maximumBytes;
+        this.maximumSharedBytes = builder.maximumSharedBytes;
+        this.evictionPolicy = builder.evictionPolicy;
+        this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+    }
+
+    /**
+     * @return The default cache specification: LRU, within {@link #DEFAULT_MAXIMUM_BYTES} (and
+     * {@link #DEFAULT_MAXIMUM_SHARED_BYTES} for shared values), and no expiration.
+     */
+    public static CacheSpec defaults() {
+        return DEFAULTS;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public long getMaximumBytes() {
+        return maximumBytes;
+    }
+
+    /**
+     * @return The (estimated) memory budget of the values shared between contexts, 0 if values are not shared
+     */
+    public long getMaximumSharedBytes() {
+        return maximumSharedBytes;
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    /**
+     * @return The time, in nanoseconds, after which an unused value expires, or 0 if values do not expire
+     */
+    public long getExpireAfterAccessNanos() {
+        return expireAfterAccessNanos;
+    }
+
+    public static final class Builder {
+        private long maximumBytes = DEFAULT_MAXIMUM_BYTES;
+        private long maximumSharedBytes = DEFAULT_MAXIMUM_SHARED_BYTES;
+        private EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+        private long expireAfterAccessNanos;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maximumBytes The (estimated) memory budget for all cached values, 0 disables caching
+         * @return this builder
+         */
+        public Builder maximumBytes(long maximumBytes) {
+            if (maximumBytes < 0) {
+                throw new IllegalArgumentException("Maximum bytes must not be negative");
+            }
+            this.maximumBytes = maximumBytes;
+            return this;
+        }
+
+        /**
+         * @param maximumSharedBytes The (estimated) memory budget for the values merged once and shared between
+         *                           contexts, 0 disables sharing
+         * @return this builder
+         */
+        public Builder maximumSharedBytes(long maximumSharedBytes) {
+            if (maximumSharedBytes < 0) {
+                throw new IllegalArgumentException("Maximum shared bytes must not be negative");
+            }
+            this.maximumSharedBytes = maximumSharedBytes;
+            return this;
+        }
+
+        /**
+         * @param evictionPolicy How values are chosen to be evicted
+         * @return this builder
+         */
+        public Builder evictionPolicy(EvictionPolicy evictionPolicy) {
+            if (evictionPolicy == null) {
+                throw new IllegalArgumentException("Eviction policy must not be null");
+            }
+            this.evictionPolicy = evictionPolicy;
+            return this;
+        }
+
+        /**
+         * @param duration Time after which a value expires if it was not accessed, 0 for never
+         * @param unit     The unit of duration
+         * @return this builder
+         */
+        public Builder expireAfterAccess(long duration, TimeUnit unit) {
+            if (duration < 0) {
+                throw new IllegalArgumentException("Expiration must not be negative");
+            }
+            this.expireAfterAccessNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        public CacheSpec build() {
+            return new CacheSpec(this);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic configurations, loadable through {@link FileSystemLoader}, for scale and regression testing.
+ * <p>
+ * Every dimension is a complete tree of values. The master bundle defines every key, and every other bundle sets
+ * each dimension with a probability of one half (at least one dimension, to a random value) and overrides some
+ * scalars of the master bundle, keeping their type, so generated configurations are valid. The same settings
+ * (including the seed) always generate the same files.
+ * <p>
+ * Also usable from the command line:
+ * <pre>
+ * java -cp ycb.jar com.yahoo.ycb.ConfigGenerator --bundles 50000 --dimensions 6 target/config
+ * </pre>
+ */
+public final class ConfigGenerator {
+
+    private static final JsonNodeFactory FACTORY = JsonNodeFactory.instance;
+    private static final int BUNDLES_PER_FILE = 1000;
+
+    private final int dimensions;
+    private final int depth;
+    private final int fanOut;
+    private final int bundles;
+    private final double overrideDensity;
+    private final int deltaSize;
+    private final int nesting;
+    private final long seed;
+
+    private ConfigGenerator(Builder builder) {
+        this.dimensions = builder.dimensions;
+        this.depth = builder.depth;
+        this.fanOut = builder.fanOut;
+        this.bundles = builder.bundles;
+        this.overrideDensity = builder.overrideDensity;
+        this.deltaSize = builder.deltaSize;
+        this.nesting = builder.nesting;
+        this.seed = builder.seed;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Writes dimensions.yml, master.yml (the master bundle) and the other bundles in files of 1000 bundles.
+     *
+     * @param directory An existing directory
+     * @throws IOException If a file can't be written
+     */
+    public void write(File directory) throws IOException {
+        final Random random = new Random(seed);
+        final List<List<String>> values = new ArrayList<>();
+
+        final ArrayNode dimensionList = FACTORY.arrayNode();
+        for (int i = 0; i < dimensions; i++) {
+            final List<String> dimensionValues = new ArrayList<>();
+            dimensionList.addObject().set("dimension" + i, dimensionValues("d" + i, depth, dimensionValues));
+            values.add(dimensionValues);
+        }
+        final ArrayNode dimensionsFile = FACTORY.arrayNode();
+        dimensionsFile.addObject().set("dimensions", dimensionList);
+        LoadUtils.MAPPER.writeValue(new File(directory, "dimensions.yml"), dimensionsFile);
+
+        final ArrayNode master = FACTORY.arrayNode();
+        final ObjectNode masterBundle = master.addObject();
+        masterBundle.putArray("settings").add("master");
+        for (int key = 0; key < deltaSize; key++) {
+            masterBundle.set("key" + key, value(key, nesting));
+        }
+        LoadUtils.MAPPER.writeValue(new File(directory, "master.yml"), master);
+
+        final int overrides = Math.max(1, (int) Math.round(deltaSize * overrideDensity));
+        ArrayNode file = FACTORY.arrayNode();
+
+        for (int i = 0; i < bundles; i++) {
+            final ObjectNode bundle = file.addObject();
+            final ArrayNode settings = bundle.putArray("settings");
+            for (int dimension = 0; dimension < dimensions; dimension++) {
+                final List<String> dimensionValues = values.get(dimension);
+                if (!dimensionValues.isEmpty() && random.nextBoolean()) {
+                    settings.add("dimension" + dimension + ":" + dimensionValues.get(random.nextInt(dimensionValues.size())));
+                }
+            }
+            if (settings.size() == 0 && dimensions > 0 && !values.get(0).isEmpty()) {
+                // a single bundle in the master context, so the order of overrides is well defined
+                final int dimension = random.nextInt(dimensions);
+                final List<String> dimensionValues = values.get(dimension);
+                settings.add("dimension" + dimension + ":" + dimensionValues.get(random.nextInt(dimensionValues.size())));
+            }
+            if (settings.size() == 0) {
+                settings.add("master");
+            }
+
+            for (int j = 0; j < overrides; j++) {
+                override(bundle, "key" + random.nextInt(deltaSize), random, i);
+            }
+
+            if (file.size() == BUNDLES_PER_FILE || i == bundles - 1) {
+                LoadUtils.MAPPER.writeValue(new File(directory, "bundles" + i / BUNDLES_PER_FILE + ".yml"), file);
+                file = FACTORY.arrayNode();
+            }
+        }
+    }
+
+    private ObjectNode dimensionValues(String prefix, int remaining, List<String> values) {
+        final ObjectNode result = FACTORY.objectNode();
+        if (remaining > 0) {
+            for (int i = 0; i < fanOut; i++) {
+                final String value = prefix + "_" + i;
+                values.add(value);
+                final ObjectNode children = dimensionValues(value, remaining - 1, values);
+                if (children.size() == 0) {
+                    result.putNull(value);
+                } else {
+                    result.set(value, children);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static ObjectNode value(int key, int remaining) {
+        final ObjectNode result = FACTORY.objectNode();
+        result.put("enabled", key % 2 == 0);
+        result.put("limit", key);
+        result.put("name", "key " + key);
+        if (remaining > 0) {
+            result.set("nested", value(key, remaining - 1));
+        }
+        return result;
+    }
+
+    /**
+     * Overrides a scalar at a random nesting level of key, the value depending on the bundle so bundles are distinct.
+     */
+    private void override(ObjectNode bundle, String key, Random random, int index) {
+        ObjectNode current = bundle.with(key);
+        for (int level = random.nextInt(nesting + 1); level > 0; level--) {
+            current = current.with("nested");
+        }
+        if (random.nextBoolean()) {
+            current.put("limit", index);
+        } else {
+            current.put("name", "bundle " + index);
+        }
+    }
+
+    /**
+     * Generates a configuration from the command line.
+     *
+     * @param args Options (--dimensions, --depth, --fan-out, --bundles, --override-density, --delta-size,
+     *             --nesting, --seed), followed by the output directory
+     * @throws IOException If a file can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        final Builder builder = builder();
+        int i = 0;
+
+        try {
+            for (; i < args.length - 1 && args[i].startsWith("--"); i += 2) {
+                final String value = args[i + 1];
+                switch (args[i]) {
+                    case "--dimensions":
+                        builder.dimensions(Integer.parseInt(value));
+                        break;
+                    case "--depth":
+                        builder.depth(Integer.parseInt(value));
+                        break;
+                    case "--fan-out":
+                        builder.fanOut(Integer.parseInt(value));
+                        break;
+                    case "--bundles":
+                        builder.bundles(Integer.parseInt(value));
+                        break;
+                    case "--override-density":
+                        builder.overrideDensity(Double.parseDouble(value));
+                        break;
+                    case "--delta-size":
+                        builder.deltaSize(Integer.parseInt(value));
+                        break;
+                    case "--nesting":
+                        builder.nesting(Integer.parseInt(value));
+                        break;
+                    case "--seed":
+                        builder.seed(Long.parseLong(value));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (i != args.length - 1) {
+                throw new IllegalArgumentException("Expecting the output directory");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: ConfigGenerator [--dimensions n] [--depth n] [--fan-out n] [--bundles n]"
+                    + " [--override-density d] [--delta-size n] [--nesting n] [--seed n] <directory>");
+            System.exit(1);
+            return;
+        }
+
+        final File directory = new File(args[i]);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        builder.build().write(directory);
+    }
+
+    public static final class Builder {
+        private int dimensions = 4;
+        private int depth = 2;
+        private int fanOut = 3;
+        private int bundles = 1000;
+        private double overrideDensity = 0.1;
+        private int deltaSize = 100;
+        private int nesting = 1;
+        private long seed;
+
+        private Builder() {
+        }
+
+        /**
+         * @param dimensions The number of dimensions
+         * @return this builder
+         */
+        public Builder dimensions(int dimensions) {
+            this.dimensions = checkNotNegative(dimensions, "Dimensions");
+            return this;
+        }
+
+        /**
+         * @param depth The number of levels of every dimension hierarchy (below the root "*")
+         * @return this builder
+         */
+        public Builder depth(int depth) {
+            this.depth = checkNotNegative(depth, "Depth");
+            return this;
+        }
+
+        /**
+         * @param fanOut The number of children of every dimension value
+         * @return this builder
+         */
+        public Builder fanOut(int fanOut) {
+            this.fanOut = checkNotNegative(fanOut, "Fan-out");
+            return this;
+        }
+
+        /**
+         * @param bundles The number of bundles, besides the master bundle
+         * @return this builder
+         */
+        public Builder bundles(int bundles) {
+            this.bundles = checkNotNegative(bundles, "Bundles");
+            return this;
+        }
+
+        /**
+         * @param overrideDensity The fraction of the master keys overridden by every bundle (at least one key)
+         * @return this builder
+         */
+        public Builder overrideDensity(double overrideDensity) {
+            if (!(overrideDensity >= 0 && overrideDensity <= 1)) {
+                throw new IllegalArgumentException("Override density must be between 0 and 1");
+            }
+            this.overrideDensity = overrideDensity;
+            return this;
+        }
+
+        /**
+         * @param deltaSize The number of top level keys of the master bundle
+         * @return this builder
+         */
+        public Builder deltaSize(int deltaSize) {
+            if (deltaSize < 1) {
+                throw new IllegalArgumentException("Delta size must be positive");
+            }
+            this.deltaSize = deltaSize;
+            return this;
+        }
+
+        /**
+         * @param nesting The number of nested objects below every top level key
+         * @return this builder
+         */
+        public Builder nesting(int nesting) {
+            this.nesting = checkNotNegative(nesting, "Nesting");
+            return this;
+        }
+
+        /**
+         * @param seed The random seed
+         * @return this builder
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        private static int checkNotNegative(int value, String name) {
+            if (value < 0) {
+                throw new IllegalArgumentException(name + " must not be negative");
+            }
+            return value;
+        }
+
+        public ConfigGenerator build() {
+            return new ConfigGenerator(this);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+/**
+ * A lookup path compiled by a Configuration (see {@link Configuration#compilePath(String)}): the path is split
+ * into segments once, and interned, so that repeated lookups of the same path neither split nor hash strings.
+ * <p>
+ * Paths are compared by identity: compiling the same path twice in the same configuration returns the same
+ * instance.
+ */
+public final class ConfigPath {
+
+    private final String path;
+    private final String[] segments;
+    private final int id;
+    private final int hash;
+
+    ConfigPath(String path, String[] segments, int id) {
+        this.path = path;
+        this.segments = segments;
+        this.id = id;
+        // spread sequential ids
+        this.hash = id * 0x9E3779B9;
+    }
+
+    /**
+     * @return The path, as it was compiled
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * The returned array is shared and must not be modified.
+     *
+     * @return The path segments
+     */
+    String[] getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return The id of the path, unique in the configuration that compiled it
+     */
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -6,16 +6,31 @@
 package com.yahoo.ycb;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.google.common.collect.ImmutableMap;
 import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The main API class.
@@ -25,24 +40,78 @@ import java.util.stream.Collectors;
  */
 public class Configuration {
 
-    private static final int PROJECTION_CACHE_CAPACITY = 100;
-    private static final int VALUE_CACHE_CAPACITY = 100;
-    private String pathSeparator = "\\.";
+    // shared mapper used to deserialize values
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final JavaType LIST_TYPE = OBJECT_MAPPER.constructType(List.class);
 
-    private final LookupTree tree;
+    private volatile Pattern pathSeparator = Pattern.compile("\\.");
 
-    // Cache from context string to value cache
-    private final ConcurrentMap<String, ConcurrentMap<String, JsonNode>> projectionCache = new ConcurrentLinkedHashMap.Builder<String, ConcurrentMap<String, JsonNode>>()
-            .maximumWeightedCapacity(PROJECTION_CACHE_CAPACITY)
-            .build();
+    // estimation of the average cached value size, to size the table of lookup paths like the value cache
+    private static final int AVERAGE_VALUE_SIZE = 512;
+
+    // lookup paths compiled explicitly, interned for the lifetime of the configuration
+    private final ConcurrentMap<String, ConfigPath> paths = new ConcurrentHashMap<>();
+    // lookup paths compiled on behalf of the String getters, bounded since they may be built dynamically
+    private final ConcurrentLinkedHashMap<String, ConfigPath> lookupPaths;
+    private final AtomicInteger pathIds = new AtomicInteger();
+
+    private volatile LookupTree tree;
+
+    // The canonical values of the current tree, replaced (not modified) when bundles change
+    private volatile Canonicalization canonicalization;
+
+    // All dimensions, as provided by the loader
+    private final List<Dimension> allDimensions;
+
+    // The dimensions of the lookup tree (i.e. not in the fixed context), in tree order
+    private final List<Dimension> dimensions;
+
+    // The merged delta of each context, or null for lazy projections
+    private final Materialization materialization;
+
+    // Cache of projected values of all contexts
+    private final ValueCache valueCache;
+
+    // Merged values shared by the contexts with the same contributing leaves, or null if not shared
+    private final SharedValues sharedValues;
 
     private final Map<String, String> fixedContext;
 
     private final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
 
-    private Configuration(LookupTree tree, Map<String, String> fixedContext) {
+    private final YcbMetrics metrics;
+
+    // false if the leaves may have released their bundles (see Builder#retainBundles)
+    private final boolean bundlesRetained;
+
+    // snapshot of the System properties overriding configuration values
+    private volatile PropertyOverrides overrides;
+    private final long overrideRefreshNanos;
+    private final AtomicBoolean refreshingOverrides = new AtomicBoolean();
+
+    private Configuration(LookupTree tree, List<Dimension> allDimensions, Builder builder) {
         this.tree = tree;
-        this.fixedContext = ImmutableMap.copyOf(fixedContext);
+        this.allDimensions = Collections.unmodifiableList(allDimensions);
+        this.dimensions = Collections.unmodifiableList(LookupTree.treeDimensions(allDimensions, builder.fixedContext));
+        this.fixedContext = ImmutableMap.copyOf(builder.fixedContext);
+        this.canonicalization = new Canonicalization(tree.canonicalValues(this.dimensions));
+        this.metrics = builder.metrics;
+        this.bundlesRetained = builder.retainBundles;
+
+        final long start = System.nanoTime();
+        this.materialization = Materialization.create(tree, this.dimensions, builder.materializationPolicy, metrics);
+        if (builder.materializationPolicy.isEager()) {
+            metrics.loadPhase(YcbMetrics.LoadPhase.MATERIALIZE, System.nanoTime() - start);
+        }
+
+        this.valueCache = new ValueCache(builder.cacheSpec, metrics);
+        this.lookupPaths = new ConcurrentLinkedHashMap.Builder<String, ConfigPath>()
+                .maximumWeightedCapacity(builder.cacheSpec.getMaximumBytes() / AVERAGE_VALUE_SIZE)
+                .build();
+        this.sharedValues = builder.cacheSpec.getMaximumSharedBytes() > 0 ?
+                new SharedValues(builder.cacheSpec.getMaximumSharedBytes(), metrics) : null;
+        this.overrideRefreshNanos = builder.overrideRefreshNanos;
+        refreshOverrides();
     }
 
     /**
@@ -51,7 +120,17 @@ public class Configuration {
      * @return A List of errors in the configuration, empty list for no errors
      */
     public List<ValidationError> validate() {
-        return tree.validate();
+        return validate(ValidationOptions.defaults());
+    }
+
+    /**
+     * Perform some validations in the configuration, in parallel
+     *
+     * @param options Limits on the errors to find, progress listener and pool validating the configuration
+     * @return A List of errors in the configuration, empty list for no errors
+     */
+    public List<ValidationError> validate(ValidationOptions options) {
+        return tree.validate(dimensions, options);
     }
 
     /**
@@ -74,7 +153,129 @@ public class Configuration {
      * @throws IOException Throws from loader methods
      */
     public static Configuration load(Loader loader, Map<String, String> fixedContext) throws IOException {
-        return new Configuration(LookupTree.create(loader, fixedContext), fixedContext);
+        return load(loader, fixedContext, MaterializationPolicy.lazy());
+    }
+
+    /**
+     * Construct the configuration given a Loader, a fixed context and a materialization policy
+     *
+     * @param loader       The loader is responsible for providing the raw configuration values from somewhere
+     * @param fixedContext fixed context, i.e. specify a subset of context that all projections will adhere.
+     * @param policy       Whether all contexts should be merged eagerly at load time (if within the policy budget)
+     * @return The Configuration instance
+     * @throws IOException Throws from loader methods
+     */
+    public static Configuration load(Loader loader, Map<String, String> fixedContext, MaterializationPolicy policy) throws IOException {
+        return builder().fixedContext(fixedContext).materializationPolicy(policy).load(loader);
+    }
+
+    /**
+     * Construct the configuration given a Loader, a fixed context and a cache specification
+     *
+     * @param loader       The loader is responsible for providing the raw configuration values from somewhere
+     * @param fixedContext fixed context, i.e. specify a subset of context that all projections will adhere.
+     * @param cacheSpec    The specification of the cache of projected values
+     * @return The Configuration instance
+     * @throws IOException Throws from loader methods
+     */
+    public static Configuration load(Loader loader, Map<String, String> fixedContext, CacheSpec cacheSpec) throws IOException {
+        return builder().fixedContext(fixedContext).cacheSpec(cacheSpec).load(loader);
+    }
+
+    /**
+     * @return A builder to specify how configurations are loaded
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Load a configuration from a snapshot, with the fixed context the snapshot was built with.
+     *
+     * @param path The snapshot file, written by {@link #writeSnapshot(OutputStream)}
+     * @return The Configuration instance
+     * @throws IOException If the file can't be read, or is not a valid snapshot
+     */
+    public static Configuration loadSnapshot(Path path) throws IOException {
+        return loadSnapshot(path, false);
+    }
+
+    /**
+     * Load a configuration from a snapshot, with the fixed context the snapshot was built with.
+     *
+     * @param path   The snapshot file, written by {@link #writeSnapshot(OutputStream)}
+     * @param mapped If true, keep the deltas off heap in the memory mapped file (see {@link SnapshotLoader})
+     * @return The Configuration instance
+     * @throws IOException If the file can't be read, or is not a valid snapshot
+     */
+    public static Configuration loadSnapshot(Path path, boolean mapped) throws IOException {
+        final SnapshotLoader loader = new SnapshotLoader(path, mapped);
+        return builder().fixedContext(loader.getFixedContext()).load(loader);
+    }
+
+    /**
+     * Write a binary snapshot of the current state of this configuration (dimensions, fixed context, and merged
+     * deltas), to be loaded with {@link #loadSnapshot(Path)} or a {@link SnapshotLoader}.
+     *
+     * @param output Where to write the snapshot (not closed)
+     * @throws IOException Thrown by the output stream
+     * @throws IllegalStateException If the configuration was loaded without retaining its bundles
+     */
+    public void writeSnapshot(OutputStream output) throws IOException {
+        checkBundlesRetained();
+        Snapshot.write(output, allDimensions, fixedContext, tree);
+    }
+
+    /**
+     * Add and remove bundles from this configuration.
+     * <p>
+     * Only the deltas of the contexts of the changed bundles are merged again, and only the cached values of
+     * contexts these bundles apply to are invalidated. Projections (including the existing ones) observe the
+     * changes as soon as this method returns.
+     *
+     * @param added   Bundles to add
+     * @param removed Bundles to remove (bundles are equal if both their contexts and deltas are equal)
+     * @throws IllegalStateException If the configuration was loaded without retaining its bundles
+     * @see Builder#retainBundles(boolean)
+     */
+    public synchronized void applyBundleChanges(Collection<Bundle> added, Collection<Bundle> removed) {
+        checkBundlesRetained();
+        tree = LookupTree.update(tree, allDimensions, fixedContext, added, removed);
+        canonicalization = new Canonicalization(tree.canonicalValues(dimensions));
+
+        final List<ContextKey> changed = new ArrayList<>();
+        for (Collection<Bundle> bundles : Arrays.asList(added, removed)) {
+            bundles.forEach(bundle -> changed.add(contextKey(bundle.getContext())));
+        }
+        final Predicate<ContextKey> affected = key -> changed.stream().anyMatch(key::matches);
+
+        if (materialization != null) {
+            materialization.refresh(tree, dimensions, affected);
+        }
+        valueCache.invalidate(affected);
+        refreshOverrides();
+    }
+
+    private void checkBundlesRetained() {
+        if (!bundlesRetained) {
+            throw new IllegalStateException("The configuration was loaded without retaining its bundles");
+        }
+    }
+
+    /**
+     * Take a new snapshot of the System properties overriding configuration values (for projections that allow
+     * System property override). Unless a refresh interval is specified when loading the configuration, changes
+     * to System properties are only visible after this method is called.
+     */
+    public void refreshOverrides() {
+        overrides = PropertyOverrides.snapshot(mapper);
+    }
+
+    /**
+     * @return true if all contexts were merged at load time
+     */
+    public boolean isMaterialized() {
+        return materialization != null;
     }
 
     /**
@@ -85,7 +286,42 @@ public class Configuration {
      * @return The projected configuration from the context
      */
     public Projection project(Map<String, String> context, boolean allowSystemPropertyOverride) {
-        return new Projection(context, allowSystemPropertyOverride);
+        return new Projection(contextKey(context), allowSystemPropertyOverride);
+    }
+
+    /**
+     * Get the projection of the configuration given a context key.
+     *
+     * @param key A context key, preferably created by {@link #contextKey(Map)} of this configuration
+     * @param allowSystemPropertyOverride if true, properties in System Properties take priority if defined
+     * @return The projected configuration from the context
+     */
+    public Projection project(ContextKey key, boolean allowSystemPropertyOverride) {
+        if (key.getDimensions() != dimensions) {
+            // key from another configuration
+            key = contextKey(key.getContext());
+        }
+        return new Projection(key, allowSystemPropertyOverride);
+    }
+
+    /**
+     * Get the projection of the configuration given a context key. Does not allow System properties override.
+     *
+     * @param key A context key, preferably created by {@link #contextKey(Map)} of this configuration
+     * @return The projected configuration from the context
+     */
+    public Projection project(ContextKey key) {
+        return project(key, false);
+    }
+
+    /**
+     * Compile a context into a key that can be reused for multiple projections of this configuration.
+     *
+     * @param context A map from dimension name to value, omitted dimensions are implicitly "any"
+     * @return The key of the context
+     */
+    public ContextKey contextKey(Map<String, String> context) {
+        return ContextKey.create(dimensions, context);
     }
 
     /**
@@ -98,54 +334,170 @@ public class Configuration {
         return project(context, false);
     }
 
+    /**
+     * Project a path for many contexts at once, e.g. to export the configuration of every context. The work shared
+     * by contexts with common dimension values (the projection of the subtrees below them) is done only once.
+     * <p>
+     * Values are not cached, and System properties do not override them.
+     *
+     * @param contexts The contexts, maps from dimension name to value
+     * @param path     The path to project
+     * @return The value of the path in each context, in the iteration order of contexts
+     */
+    public List<JsonNode> projectAll(Collection<Map<String, String>> contexts, String path) {
+        return projectAll(contexts, path, null);
+    }
+
+    /**
+     * @param contexts The contexts, maps from dimension name to value
+     * @param path     The path to project
+     * @param pool     Projects the contexts in parallel, grouped by the value of the first dimension, or null to
+     *                 project them in the calling thread
+     * @return The value of the path in each context, in the iteration order of contexts
+     * @see #projectAll(Collection, String)
+     */
+    public List<JsonNode> projectAll(Collection<Map<String, String>> contexts, String path, ForkJoinPool pool) {
+        final ConfigPath compiled = lookupPath(path);
+        final Canonicalization current = canonicalization;
+        final List<int[]> ordinals = new ArrayList<>(contexts.size());
+        for (Map<String, String> context : contexts) {
+            // canonical contexts share the projection of more subtrees
+            ordinals.add(current.canonical(contextKey(context), dimensions).getOrdinals());
+        }
+
+        if (materialization != null) {
+            final List<JsonNode> result = new ArrayList<>(ordinals.size());
+            for (int[] context : ordinals) {
+                final JsonNode delta = materialization.get(ContextKey.create(dimensions, context));
+                final JsonNode value = delta == null ? null : LookupTree.get(delta, compiled.getSegments());
+                result.add(value == null ? NullNode.getInstance() : value);
+            }
+            return result;
+        }
+
+        return BulkProjection.project(tree, compiled.getSegments(), ordinals, pool);
+    }
+
     /**
      * Enumerate all possible contexts from the provided dimensions.
+     * <p>
+     * The whole list is kept in memory, prefer {@link #contexts(boolean)} for large dimensions.
      *
      * @param dimensions The list of dimensions to generate the possible contexts
      * @return A list of all valid combination of contexts from the given dimensions
      */
     public List<Map<String, String>> traverseContexts(List<Dimension> dimensions) {
-        final List<Map<String, String>> contexts = new ArrayList<>();
+        return contexts(dimensions, null)
+                .map(key -> (Map<String, String>) new HashMap<>(key.getContext()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Lazily enumerate the contexts of the configuration dimensions (the dimensions not in the fixed context),
+     * the first dimension being the most significant one. The stream runs in constant memory and splits evenly
+     * when {@link Stream#parallel() parallel}.
+     *
+     * @param distinctOnly If true, skip the contexts projecting the same configuration as an enumerated one, i.e.
+     *                     only enumerate values for which some bundle is defined. Enumerated contexts may still
+     *                     project equal configurations.
+     * @return The keys of the contexts
+     */
+    public Stream<ContextKey> contexts(boolean distinctOnly) {
+        return contexts(dimensions, distinctOnly ? tree.significantValues(dimensions) : null);
+    }
+
+    /**
+     * @return The keys of all contexts of the configuration dimensions
+     * @see #contexts(boolean)
+     */
+    public Stream<ContextKey> contexts() {
+        return contexts(false);
+    }
 
-        if (!dimensions.isEmpty()) {
-            final Dimension dimension = dimensions.get(0);
-            final List<Dimension> rest = dimensions.subList(1, dimensions.size());
+    private static Stream<ContextKey> contexts(List<Dimension> dimensions, boolean[][] significant) {
+        final int[][] values = new int[dimensions.size()][];
 
-            for (final String value : dimension.traverse()) {
-                traverseContexts(rest).forEach(context -> {
-                    Map<String, String> newContext = new HashMap<>();
-                    newContext.putAll(context);
-                    newContext.put(dimension.getName(), value);
+        for (int i = 0; i < values.length; i++) {
+            final int size = dimensions.get(i).size();
+            final int[] ordinals = new int[size];
+            int count = 0;
 
-                    contexts.add(newContext);
-                });
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                if (significant == null || significant[i][ordinal]) {
+                    ordinals[count++] = ordinal;
+                }
             }
-        } else {
-            contexts.add(Collections.emptyMap());
+            values[i] = Arrays.copyOf(ordinals, count);
         }
 
-        return contexts;
-    }
-
-    private static String contextToString(final Map<String, String> context) {
-        return context.entrySet().stream()
-                .map(entry -> entry.getKey() + "=" + entry.getValue())
-                .sorted()
-                .collect(Collectors.joining("&"));
+        return StreamSupport.stream(new ContextSpliterator(dimensions, values), false);
     }
 
     /**
      * @return The regular expression used to separate projection lookup paths
      */
     public String getPathSeparator() {
-        return pathSeparator;
+        return pathSeparator.pattern();
     }
 
     /**
+     * Paths compiled before the separator changes keep the segments they were compiled with.
+     *
      * @param pathSeparator Regular expression used to separate projection lookup paths
      */
     public void setPathSeparator(String pathSeparator) {
-        this.pathSeparator = pathSeparator;
+        this.pathSeparator = Pattern.compile(pathSeparator);
+        paths.clear();
+        lookupPaths.clear();
+        refreshOverrides();
+    }
+
+    /**
+     * Compile (and intern) a lookup path, so that it can be used for repeated lookups without splitting or
+     * hashing the path again. Compiled paths are kept for the lifetime of the configuration, so only a bounded set
+     * of paths should be compiled (the String getters do not intern paths forever).
+     *
+     * @param path The lookup path, whose segments are separated by the path separator
+     * @return The compiled path
+     */
+    public ConfigPath compilePath(String path) {
+        final ConfigPath compiled = paths.get(path);
+        if (compiled != null) {
+            return compiled;
+        }
+
+        // keep the instance already used by the String getters, so their cached values are reused
+        final ConfigPath looked = lookupPaths.get(path);
+        final Pattern separator = pathSeparator;
+        return paths.computeIfAbsent(path, p -> looked != null ? looked :
+                new ConfigPath(p, separator.split(p), pathIds.getAndIncrement()));
+    }
+
+    /**
+     * Compile a lookup path for the String getters: explicitly compiled paths are reused, other paths are interned in
+     * a table bounded like the value cache, whose least recently used paths are compiled again (as a new path).
+     */
+    private ConfigPath lookupPath(String path) {
+        final ConfigPath compiled = paths.get(path);
+        if (compiled != null) {
+            return compiled;
+        }
+
+        final ConfigPath looked = lookupPaths.get(path);
+        if (looked != null) {
+            return looked;
+        }
+
+        final ConfigPath created = new ConfigPath(path, pathSeparator.split(path), pathIds.getAndIncrement());
+        final ConfigPath previous = lookupPaths.putIfAbsent(path, created);
+        return previous == null ? created : previous;
+    }
+
+    /**
+     * @return The number of lookup paths currently interned
+     */
+    int internedPaths() {
+        return paths.size() + lookupPaths.size();
     }
 
     /**
@@ -153,54 +505,236 @@ public class Configuration {
      */
     public class Projection {
 
-        private ConcurrentMap<String, JsonNode> valueCache;
-
-        private final Map<String, String> context;
+        private final ContextKey key;
         private final boolean allowSystemPropertyOverride;
 
+        // the key of the canonical context, along with the canonical values it was computed with
+        private volatile CanonicalKey canonicalKey;
+
         /**
          * Create a new projection of the configuration
          *
-         * @param context the configuration context
+         * @param key the configuration context key
          * @param allowSystemPropertyOverride Whether the System properties take priority
          */
-        private Projection(Map<String, String> context, boolean allowSystemPropertyOverride) {
-            this.context = context;
+        private Projection(ContextKey key, boolean allowSystemPropertyOverride) {
+            this.key = key;
             this.allowSystemPropertyOverride = allowSystemPropertyOverride;
+        }
 
-            final String key = contextToString(context);
-            valueCache = projectionCache.get(key);
-            if (valueCache == null) {
-                valueCache = new ConcurrentLinkedHashMap.Builder<String, JsonNode>()
-                        .maximumWeightedCapacity(VALUE_CACHE_CAPACITY)
-                        .build();
-                projectionCache.put(key, valueCache);
-            }
+        /**
+         * @return The current merged delta of the context when the configuration is materialized (read on every
+         * lookup, so bundle changes are observed), otherwise null
+         */
+        private JsonNode delta() {
+            return materialization == null ? null : materialization.get(key);
         }
 
         public JsonNode getJson(String path) {
+            return getJson(lookupPath(path));
+        }
+
+        public JsonNode getJson(ConfigPath path) {
             if (allowSystemPropertyOverride) {
-                String prop = System.getProperty(path);
-                if (prop != null) {
-                    // parse property to JSON using YAML parsing
-                    try {
-                        return mapper.readTree(prop);
-                    } catch (IOException e) {
-                        // DO nothing... continue to load from config
+                final JsonNode value = getOverride(path);
+                if (value != null) {
+                    return value;
+                }
+            }
+
+            final JsonNode delta = delta();
+            if (delta != null) {
+                final JsonNode value = LookupTree.get(delta, path.getSegments());
+                return value == null ? NullNode.getInstance() : value;
+            }
+
+            final ValueCache.Entry entry = valueCache.getEntry(cacheKey(), path);
+            return entry == null ? resolve(path).getValue() : entry.getValue();
+        }
+
+        /**
+         * Get the values of several paths at once. The paths missing from the cache are projected together, in a
+         * single descent of the lookup tree.
+         *
+         * @param paths The paths to get
+         * @return The value of each path, by path, in the iteration order of paths
+         */
+        public Map<String, JsonNode> getAll(Collection<String> paths) {
+            final ConfigPath[] compiled = new ConfigPath[paths.size()];
+            int index = 0;
+            for (String path : paths) {
+                compiled[index++] = lookupPath(path);
+            }
+
+            final List<JsonNode> values = getAll(compiled);
+            final Map<String, JsonNode> result = new LinkedHashMap<>();
+            for (int i = 0; i < compiled.length; i++) {
+                result.put(compiled[i].getPath(), values.get(i));
+            }
+            return result;
+        }
+
+        /**
+         * @param paths The paths to get
+         * @return The value of each path, in the same order as paths
+         * @see #getAll(Collection)
+         */
+        public List<JsonNode> getAll(ConfigPath... paths) {
+            final JsonNode[] result = new JsonNode[paths.length];
+            final List<Integer> missing = new ArrayList<>();
+            final ContextKey cacheKey = cacheKey();
+            final JsonNode delta = delta();
+
+            for (int i = 0; i < paths.length; i++) {
+                if (allowSystemPropertyOverride) {
+                    result[i] = getOverride(paths[i]);
+                    if (result[i] != null) {
+                        continue;
                     }
                 }
+
+                if (delta != null) {
+                    final JsonNode value = LookupTree.get(delta, paths[i].getSegments());
+                    result[i] = value == null ? NullNode.getInstance() : value;
+                    continue;
+                }
+
+                final ValueCache.Entry entry = valueCache.getEntry(cacheKey, paths[i]);
+                if (entry == null) {
+                    missing.add(i);
+                } else {
+                    result[i] = entry.getValue();
+                }
+            }
+
+            if (!missing.isEmpty()) {
+                resolveAll(cacheKey, paths, missing, result);
+            }
+            return Arrays.asList(result);
+        }
+
+        /**
+         * Project the paths at the given indexes in a single descent (ignoring the cache), and cache the values.
+         */
+        private void resolveAll(ContextKey cacheKey, ConfigPath[] paths, List<Integer> indexes, JsonNode[] result) {
+            final String[][] segments = new String[indexes.size()][];
+            final List<List<JsonNode>> layers = new ArrayList<>(indexes.size());
+            final List<List<LookupTree>> leaves = sharedValues == null ? null : new ArrayList<>(indexes.size());
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = paths[indexes.get(i)].getSegments();
+                layers.add(new ArrayList<>());
+                if (leaves != null) {
+                    leaves.add(new ArrayList<>());
+                }
+            }
+
+            final LookupTree snapshot = tree;
+            final long start = metrics == YcbMetrics.NOOP ? 0 : System.nanoTime();
+            snapshot.projectAll(cacheKey.getOrdinals(), 0, segments, layers, leaves);
+            if (metrics != YcbMetrics.NOOP) {
+                metrics.missResolved(System.nanoTime() - start);
+            }
+
+            for (int i = 0; i < segments.length; i++) {
+                final ConfigPath path = paths[indexes.get(i)];
+                final SharedValues.Entry value = leaves == null ? SharedValues.unshared(overlay(layers.get(i))) :
+                        sharedValues.merge(path, layers.get(i), leaves.get(i));
+                result[indexes.get(i)] = valueCache.put(cacheKey, path, value.getValue(), value.isShared()).getValue();
+
+                if (tree != snapshot) {
+                    // bundles changed while projecting, the value may be stale
+                    valueCache.invalidate(cacheKey, path);
+                }
+            }
+        }
+
+        /**
+         * Project a path (ignoring the cache), and cache the value.
+         */
+        private ValueCache.Entry resolve(ConfigPath path) {
+            final ContextKey cacheKey = cacheKey();
+
+            final JsonNode delta = delta();
+            if (delta != null) {
+                final JsonNode value = LookupTree.get(delta, path.getSegments());
+                return valueCache.put(cacheKey, path, value == null ? NullNode.getInstance() : value);
             }
 
-            JsonNode value = valueCache.get(path);
-            if (value == null) {
-                value = tree.project(context, path.split(pathSeparator));
-                valueCache.put(path, value);
+            final LookupTree snapshot = tree;
+            final SharedValues.Entry value = project(snapshot, cacheKey, path);
+            final ValueCache.Entry entry = valueCache.put(cacheKey, path, value.getValue(), value.isShared());
+
+            if (tree != snapshot) {
+                // bundles changed while projecting, the value may be stale
+                valueCache.invalidate(cacheKey, path);
+            }
+            return entry;
+        }
+
+        private SharedValues.Entry project(LookupTree snapshot, ContextKey cacheKey, ConfigPath path) {
+            if (metrics == YcbMetrics.NOOP) {
+                return project(snapshot, cacheKey.getOrdinals(), path);
             }
+
+            final long start = System.nanoTime();
+            final SharedValues.Entry value = project(snapshot, cacheKey.getOrdinals(), path);
+            metrics.missResolved(System.nanoTime() - start);
             return value;
         }
 
+        private SharedValues.Entry project(LookupTree snapshot, int[] ordinals, ConfigPath path) {
+            if (sharedValues == null || !(snapshot instanceof InnerNode)) {
+                // without dimensions, the root is the only leaf and its values are never merged
+                return SharedValues.unshared(snapshot.project(ordinals, 0, path.getSegments()));
+            }
+
+            // project along with the contributing leaves, which identify the merged value
+            final List<JsonNode> layers = new ArrayList<>();
+            final List<LookupTree> leaves = new ArrayList<>();
+            snapshot.projectAll(ordinals, 0, new String[][]{path.getSegments()},
+                    Collections.singletonList(layers), Collections.singletonList(leaves));
+            return sharedValues.merge(path, layers, leaves);
+        }
+
+        private JsonNode overlay(List<JsonNode> layers) {
+            final JsonNode value = OverlayNode.overlay(layers);
+            return value == null ? NullNode.getInstance() : value;
+        }
+
+        /**
+         * @return The key of the canonical context, shared with the other contexts projecting the same configuration
+         */
+        private ContextKey cacheKey() {
+            final Canonicalization current = canonicalization;
+            CanonicalKey canonical = canonicalKey;
+
+            if (canonical == null || canonical.canonicalization != current) {
+                // first lookup, or bundles changed since the key was computed
+                canonical = new CanonicalKey(current, current.canonical(key, dimensions));
+                canonicalKey = canonical;
+            }
+            return canonical.key;
+        }
+
+        private JsonNode getOverride(ConfigPath path) {
+            PropertyOverrides current = overrides;
+
+            if (overrideRefreshNanos > 0 && System.nanoTime() - current.getTimestamp() >= overrideRefreshNanos
+                    && refreshingOverrides.compareAndSet(false, true)) {
+                // a single thread refreshes, others keep using the current snapshot
+                try {
+                    refreshOverrides();
+                    current = overrides;
+                } finally {
+                    refreshingOverrides.set(false);
+                }
+            }
+
+            return current.get(path.getPath());
+        }
+
         public Map<String, String> getContext() {
-            return new ImmutableMap.Builder<String, String>().putAll(fixedContext).putAll(context).build();
+            return new ImmutableMap.Builder<String, String>().putAll(fixedContext).putAll(key.getContext()).build();
         }
 
         public String getText(String path) {
@@ -243,17 +777,290 @@ public class Configuration {
             return getJson(path).asDouble(defaultValue);
         }
 
+        /**
+         * Deserialize a value. A new object is deserialized on every call, so it can be modified by the caller (see
+         * {@link #getObject(ConfigPath, Class)} to share a cached object instead).
+         */
         public <T> T getObject(String path, Class<T> valueType) throws JsonProcessingException {
-            ObjectMapper mapper = new ObjectMapper();
-            return mapper.treeToValue(getJson(path), valueType);
+            return OBJECT_MAPPER.treeToValue(getJson(path), valueType);
         }
 
+        /**
+         * Deserialize a list. A new list is deserialized on every call, so it can be modified by the caller (see
+         * {@link #getList(ConfigPath)} to share a cached list instead).
+         */
         public <T> List<T> getList(String path) {
             try {
-                return getObject(path, List.class);
+                return OBJECT_MAPPER.treeToValue(getJson(path), LIST_TYPE);
+            } catch (JsonProcessingException e) {
+                return null;
+            }
+        }
+
+        public String getText(ConfigPath path) {
+            return getText(path, "");
+        }
+
+        public boolean getBoolean(ConfigPath path) {
+            return getBoolean(path, false);
+        }
+
+        public int getInteger(ConfigPath path) {
+            return getInteger(path, 0);
+        }
+
+        public long getLong(ConfigPath path) {
+            return getLong(path, 0);
+        }
+
+        public double getDouble(ConfigPath path) {
+            return getDouble(path, 0);
+        }
+
+        public String getText(ConfigPath path, String defaultValue) {
+            return getJson(path).asText(defaultValue);
+        }
+
+        public boolean getBoolean(ConfigPath path, boolean defaultValue) {
+            return getJson(path).asBoolean(defaultValue);
+        }
+
+        public int getInteger(ConfigPath path, int defaultValue) {
+            return getJson(path).asInt(defaultValue);
+        }
+
+        public long getLong(ConfigPath path, long defaultValue) {
+            return getJson(path).asLong(defaultValue);
+        }
+
+        public double getDouble(ConfigPath path, double defaultValue) {
+            return getJson(path).asDouble(defaultValue);
+        }
+
+        /**
+         * Deserialize a value. Deserialized values are cached along with the projected value, and shared by all
+         * callers asking for the same context, path and type, therefore they must not be modified.
+         */
+        public <T> T getObject(ConfigPath path, Class<T> valueType) throws JsonProcessingException {
+            return getObject(path, OBJECT_MAPPER.constructType(valueType));
+        }
+
+        /**
+         * Deserialize a value. Deserialized values are cached along with the projected value, and shared by all
+         * callers asking for the same context, path and type, therefore they must not be modified.
+         */
+        public <T> T getObject(ConfigPath path, TypeReference<T> valueType) throws JsonProcessingException {
+            return getObject(path, OBJECT_MAPPER.constructType(valueType));
+        }
+
+        /**
+         * Deserialize a value. A new object is deserialized on every call, so it can be modified by the caller (see
+         * {@link #getObject(ConfigPath, TypeReference)} to share a cached object instead).
+         */
+        public <T> T getObject(String path, TypeReference<T> valueType) throws JsonProcessingException {
+            return OBJECT_MAPPER.treeToValue(getJson(path), OBJECT_MAPPER.constructType(valueType));
+        }
+
+        /**
+         * Deserialize a list. Deserialized lists are cached along with the projected value, and shared by all
+         * callers asking for the same context and path, therefore they must not be modified.
+         */
+        public <T> List<T> getList(ConfigPath path) {
+            try {
+                return getObject(path, LIST_TYPE);
             } catch (JsonProcessingException e) {
                 return null;
             }
         }
+
+        private <T> T getObject(ConfigPath path, JavaType valueType) throws JsonProcessingException {
+            if (allowSystemPropertyOverride) {
+                final JsonNode value = getOverride(path);
+                if (value != null) {
+                    return OBJECT_MAPPER.treeToValue(value, valueType);
+                }
+            }
+
+            ValueCache.Entry entry = valueCache.getEntry(cacheKey(), path);
+            if (entry == null) {
+                entry = resolve(path);
+            }
+            return entry.getObject(valueType, OBJECT_MAPPER);
+        }
+    }
+
+    /**
+     * The nearest significant ancestry of every value of the tree dimensions (see
+     * {@link LookupTree#canonicalValues(List)}). Contexts with the same canonical values share their cached values.
+     */
+    private static final class Canonicalization {
+        private final int[][] ordinals;
+
+        private Canonicalization(int[][] ordinals) {
+            this.ordinals = ordinals;
+        }
+
+        /**
+         * @return The key of the canonical context of key (key itself if already canonical)
+         */
+        ContextKey canonical(ContextKey key, List<Dimension> dimensions) {
+            final int[] values = key.getOrdinals();
+            int[] result = null;
+
+            for (int i = 0; i < values.length; i++) {
+                // unknown values are kept as is
+                final int canonical = values[i] < 0 ? values[i] : ordinals[i][values[i]];
+                if (canonical != values[i]) {
+                    if (result == null) {
+                        result = values.clone();
+                    }
+                    result[i] = canonical;
+                }
+            }
+            return result == null ? key : ContextKey.create(dimensions, result);
+        }
+    }
+
+    private static final class CanonicalKey {
+        private final Canonicalization canonicalization;
+        private final ContextKey key;
+
+        private CanonicalKey(Canonicalization canonicalization, ContextKey key) {
+            this.canonicalization = canonicalization;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Specifies how a Configuration is loaded. Builders are reusable: each call to {@link #load(Loader)} creates a
+     * new Configuration with the current settings.
+     */
+    public static final class Builder {
+        private Map<String, String> fixedContext = Collections.emptyMap();
+        private MaterializationPolicy materializationPolicy = MaterializationPolicy.lazy();
+        private CacheSpec cacheSpec = CacheSpec.defaults();
+        private long overrideRefreshNanos;
+        private Executor executor;
+        private YcbMetrics metrics = YcbMetrics.NOOP;
+        private boolean retainBundles = true;
+
+        private Builder() {
+        }
+
+        /**
+         * @param fixedContext fixed context, i.e. specify a subset of context that all projections will adhere.
+         * @return this builder
+         */
+        public Builder fixedContext(Map<String, String> fixedContext) {
+            this.fixedContext = ImmutableMap.copyOf(fixedContext);
+            return this;
+        }
+
+        /**
+         * @param materializationPolicy Whether all contexts should be merged eagerly at load time
+         * @return this builder
+         */
+        public Builder materializationPolicy(MaterializationPolicy materializationPolicy) {
+            this.materializationPolicy = materializationPolicy;
+            return this;
+        }
+
+        /**
+         * @param cacheSpec The specification of the cache of projected values
+         * @return this builder
+         */
+        public Builder cacheSpec(CacheSpec cacheSpec) {
+            this.cacheSpec = cacheSpec;
+            return this;
+        }
+
+        /**
+         * @param duration How often System property overrides are refreshed, 0 to refresh them only when
+         *                 {@link Configuration#refreshOverrides()} is called
+         * @param unit     The unit of duration
+         * @return this builder
+         */
+        public Builder overrideRefreshInterval(long duration, TimeUnit unit) {
+            if (duration < 0) {
+                throw new IllegalArgumentException("Refresh interval must not be negative");
+            }
+            this.overrideRefreshNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * @param executor Builds the lookup tree in parallel (one task per value of the first dimension),
+         *                 null to build it in the loading thread
+         * @return this builder
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @param metrics Receives the cache, projection and load metrics of the configuration
+         * @return this builder
+         */
+        public Builder metrics(YcbMetrics metrics) {
+            if (metrics == null) {
+                throw new IllegalArgumentException("Metrics must not be null");
+            }
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Every leaf of the lookup tree keeps the bundles it was merged from, to be merged again by
+         * {@link Configuration#applyBundleChanges(Collection, Collection)} and written by
+         * {@link Configuration#writeSnapshot(OutputStream)}. Merged deltas share the values of the bundles, so this
+         * only costs the objects overridden by another bundle of the same leaf, but configurations never changed
+         * nor written can drop them (configurations loaded from a snapshot share its tree, and keep them).
+         *
+         * @param retainBundles False to release the bundles once the configuration is loaded, then bundle changes
+         *                      and snapshots are not supported
+         * @return this builder
+         */
+        public Builder retainBundles(boolean retainBundles) {
+            this.retainBundles = retainBundles;
+            return this;
+        }
+
+        /**
+         * Construct the configuration given a Loader.
+         *
+         * @param loader The loader is responsible for providing the raw configuration values from somewhere
+         * @return The Configuration instance
+         * @throws IOException Throws from loader methods
+         */
+        public Configuration load(Loader loader) throws IOException {
+            final long start = System.nanoTime();
+            final List<Dimension> dimensions = loader.getDimensions();
+            metrics.loadPhase(YcbMetrics.LoadPhase.DIMENSIONS, System.nanoTime() - start);
+
+            if (loader instanceof SnapshotLoader) {
+                final SnapshotLoader snapshot = (SnapshotLoader) loader;
+                if (snapshot.getFixedContext().equals(fixedContext)) {
+                    return new Configuration(snapshot.getTree(), dimensions, this);
+                }
+                if (!fixedContext.entrySet().containsAll(snapshot.getFixedContext().entrySet())) {
+                    // bundles incompatible with the snapshot fixed context were not kept
+                    throw new IllegalArgumentException("Fixed context " + fixedContext
+                            + " does not include the snapshot fixed context " + snapshot.getFixedContext());
+                }
+            }
+
+            final long parsing = System.nanoTime();
+            final Set<Bundle> bundles = loader.getBundles();
+            metrics.loadPhase(YcbMetrics.LoadPhase.BUNDLES, System.nanoTime() - parsing);
+            loader.getParseTimings().forEach(metrics::fileParsed);
+
+            final LookupTree tree = LookupTree.create(dimensions, bundles, fixedContext, executor, metrics);
+            if (!retainBundles) {
+                tree.dropBundles();
+            }
+
+            return new Configuration(tree, dimensions, this);
+        }
     }
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import java.util.*;
+
+/**
+ * A context compiled against the dimensions of a Configuration: the ordinal of the value of each
+ * (non fixed) dimension, in the configuration dimensions order.
+ * <p>
+ * Keys are immutable and cheap to hash and compare, so request handlers can build a key once (see
+ * {@link Configuration#contextKey(Map)}) and reuse it for every projection of the same context. To keep building
+ * keys cheap, the context a key is created from is only copied when {@link #getContext()} is first called, so it
+ * must not be modified while the key is in use.
+ * Dimensions not known by the configuration are ignored, and dimension values not known by the
+ * configuration are kept as an invalid ordinal (-1), which does not match any bundle.
+ */
+public final class ContextKey {
+
+    private final List<Dimension> dimensions;
+    private final int[] ordinals;
+
+    // the context this key was created from (not copied), or null if created from ordinals
+    private final Map<String, String> source;
+    // copy of the source, or built from the ordinals, on demand
+    private volatile Map<String, String> context;
+    private final int hash;
+
+    private ContextKey(List<Dimension> dimensions, Map<String, String> source, int[] ordinals) {
+        this.dimensions = dimensions;
+        this.source = source;
+        this.ordinals = ordinals;
+        this.hash = Arrays.hashCode(ordinals);
+    }
+
+    /**
+     * @param dimensions The dimensions of the lookup tree, in tree order
+     * @param context    A map from dimension name to value, omitted dimensions are implicitly "any"
+     * @return The key of the context
+     */
+    static ContextKey create(List<Dimension> dimensions, Map<String, String> context) {
+        final int[] ordinals = new int[dimensions.size()];
+
+        for (int i = 0; i < ordinals.length; i++) {
+            final Dimension dimension = dimensions.get(i);
+            ordinals[i] = dimension.getOrdinal(context.getOrDefault(dimension.getName(), LookupTree.ANY_VALUE));
+        }
+
+        return new ContextKey(dimensions, context, ordinals);
+    }
+
+    /**
+     * @param dimensions The dimensions of the lookup tree, in tree order
+     * @param ordinals   The ordinal of the value of each dimension, in tree order
+     * @return The key of the context
+     */
+    static ContextKey create(List<Dimension> dimensions, int[] ordinals) {
+        return new ContextKey(dimensions, null, ordinals);
+    }
+
+    /**
+     * @return A copy of the context this key was created from, or the (known) values of its ordinals
+     */
+    public Map<String, String> getContext() {
+        Map<String, String> result = context;
+        if (result == null) {
+            if (source != null) {
+                // null values are tolerated, as when the key was created
+                result = new LinkedHashMap<>(source);
+            } else {
+                result = new HashMap<>();
+                for (int i = 0; i < ordinals.length; i++) {
+                    // unknown values can't be named
+                    if (ordinals[i] >= 0) {
+                        result.put(dimensions.get(i).getName(), dimensions.get(i).getValue(ordinals[i]));
+                    }
+                }
+            }
+            result = Collections.unmodifiableMap(result);
+            context = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return The dimensions this key was compiled against
+     */
+    List<Dimension> getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * The returned array is shared and must not be modified.
+     *
+     * @return The ordinal of the value of each dimension, in tree order
+     */
+    int[] getOrdinals() {
+        return ordinals;
+    }
+
+    /**
+     * @param bundle The key of a bundle context (compiled against the same dimensions)
+     * @return true if the bundle applies to this context, i.e. every bundle value is an ancestry of the context value
+     */
+    boolean matches(ContextKey bundle) {
+        for (int i = 0; i < ordinals.length; i++) {
+            if (!contains(dimensions.get(i).getAncestries(ordinals[i]), bundle.ordinals[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ContextKey)) {
+            return false;
+        }
+        final ContextKey other = (ContextKey) o;
+        return hash == other.hash && dimensions == other.dimensions && Arrays.equals(ordinals, other.ordinals);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < ordinals.length; i++) {
+            if (i > 0) {
+                builder.append('&');
+            }
+            builder.append(dimensions.get(i).getName()).append('=')
+                    .append(ordinals[i] < 0 ? "?" : dimensions.get(i).getValue(ordinals[i]));
+        }
+        return builder.toString();
+    }
+}
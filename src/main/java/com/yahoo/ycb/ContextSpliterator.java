@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Lazily enumerates the cartesian product of the values of a list of dimensions, the first dimension being the
+ * most significant one.
+ * <p>
+ * Contexts are numbered as a mixed radix number (one digit per dimension), so a range of contexts is split in
+ * constant time and every context is generated in constant memory.
+ */
+final class ContextSpliterator implements Spliterator<ContextKey> {
+
+    private final List<Dimension> dimensions;
+
+    // the ordinals enumerated for each dimension
+    private final int[][] values;
+
+    private long index;
+    private final long end;
+
+    // the value index of each dimension of the context at index, decoded on first use
+    private int[] digits;
+
+    /**
+     * @param dimensions The dimensions of the contexts
+     * @param values     The ordinals to enumerate for each dimension, in order
+     */
+    ContextSpliterator(List<Dimension> dimensions, int[][] values) {
+        this(dimensions, values, 0, count(values));
+    }
+
+    private ContextSpliterator(List<Dimension> dimensions, int[][] values, long index, long end) {
+        this.dimensions = dimensions;
+        this.values = values;
+        this.index = index;
+        this.end = end;
+    }
+
+    private static long count(int[][] values) {
+        long count = 1;
+        for (int[] dimensionValues : values) {
+            count = Math.multiplyExact(count, dimensionValues.length);
+        }
+        return count;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super ContextKey> action) {
+        if (index >= end) {
+            return false;
+        }
+
+        if (digits == null) {
+            digits = decode(index);
+        }
+
+        final int[] ordinals = new int[digits.length];
+        for (int i = 0; i < digits.length; i++) {
+            ordinals[i] = values[i][digits[i]];
+        }
+
+        index++;
+        // increment the digits, carrying from the least significant dimension
+        for (int i = digits.length - 1; i >= 0 && ++digits[i] == values[i].length; i--) {
+            digits[i] = 0;
+        }
+
+        action.accept(ContextKey.create(dimensions, ordinals));
+        return true;
+    }
+
+    private int[] decode(long position) {
+        final int[] result = new int[values.length];
+        for (int i = values.length - 1; i >= 0; i--) {
+            result[i] = (int) (position % values[i].length);
+            position /= values[i].length;
+        }
+        return result;
+    }
+
+    @Override
+    public Spliterator<ContextKey> trySplit() {
+        final long remaining = end - index;
+        if (remaining < 2) {
+            return null;
+        }
+
+        final long middle = index + remaining / 2;
+        final ContextSpliterator prefix = new ContextSpliterator(dimensions, values, index, middle);
+        index = middle;
+        digits = null;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+}
@@ -5,8 +5,6 @@
 
 package com.yahoo.ycb;
 
-import com.google.common.collect.Lists;
-
 import java.util.*;
 
 /**
@@ -14,23 +12,33 @@ import java.util.*;
  * between a dimension name, and the tree of values this dimension can
  * be (i.e. the possible values for that this dimension name can assume
  * in contexts).
+ * <p>
+ * Every value is assigned an integer ordinal at construction time, following the
+ * deep first traversal order (the root "*" is always ordinal 0), so lookups can be
+ * performed on arrays instead of maps.
  */
 public class Dimension {
 
+    private static final int[] NO_ANCESTRIES = new int[0];
+
     private final String name;
     private final DimensionValue value;
     private final Map<String, DimensionValue> valueMap = new HashMap<>();
+    private final DimensionValue[] ordinals;
 
     public Dimension(String name, DimensionValue value) {
         this.name = name;
         this.value = value;
         buildValueMap(value);
+
+        final List<DimensionValue> sorted = new ArrayList<>();
+        value.assignOrdinals(sorted, NO_ANCESTRIES);
+        ordinals = sorted.toArray(new DimensionValue[0]);
     }
 
     private void buildValueMap(DimensionValue dimValue) {
         valueMap.put(dimValue.value, dimValue);
         for (DimensionValue childDimValue : dimValue.subValues) {
-            childDimValue.parent = dimValue;
             buildValueMap(childDimValue);
         }
     }
@@ -40,15 +48,14 @@ public class Dimension {
      * @return A list of ancestries of the value, including itself, until root (*)
      */
     public List<String> getAncestries(String value) {
-        final ArrayList<String> result = new ArrayList<>();
-        DimensionValue dimValue = valueMap.get(value);
+        final int[] ancestries = getAncestries(getOrdinal(value));
+        final List<String> result = new ArrayList<>(ancestries.length);
 
-        while (dimValue != null) {
-            result.add(dimValue.value);
-            dimValue = dimValue.parent;
+        for (int ordinal : ancestries) {
+            result.add(ordinals[ordinal].value);
         }
 
-        return Lists.reverse(result);
+        return result;
     }
 
     public String getName() {
@@ -62,6 +69,40 @@ public class Dimension {
         return value.traverse();
     }
 
+    /**
+     * @return The number of values of this dimension (including the root "*")
+     */
+    int size() {
+        return ordinals.length;
+    }
+
+    /**
+     * @param value The dimension value
+     * @return The ordinal of the value, or -1 if the value does not belong to this dimension
+     */
+    int getOrdinal(String value) {
+        final DimensionValue dimValue = valueMap.get(value);
+        return dimValue == null ? -1 : dimValue.ordinal;
+    }
+
+    /**
+     * @param ordinal The dimension value ordinal
+     * @return The dimension value
+     */
+    String getValue(int ordinal) {
+        return ordinals[ordinal].value;
+    }
+
+    /**
+     * The returned array is shared and must not be modified.
+     *
+     * @param ordinal The dimension value ordinal to start from
+     * @return The ordinals of the ancestries of the value, from root (*) until itself (inclusive)
+     */
+    int[] getAncestries(int ordinal) {
+        return ordinal < 0 || ordinal >= ordinals.length ? NO_ANCESTRIES : ordinals[ordinal].ancestries;
+    }
+
     /**
      * A dimension value is a tree of values, starting with the special "ANY", or "ROOT",
      * or "MASTER" dimension, denoted as "*".
@@ -69,7 +110,8 @@ public class Dimension {
     public static class DimensionValue implements Comparable<DimensionValue> {
         private final String value;
         private final Set<DimensionValue> subValues;
-        private DimensionValue parent;
+        private int ordinal;
+        private int[] ancestries;
 
         public DimensionValue(String value, Set<DimensionValue> subValues) {
             this.value = value;
@@ -86,6 +128,18 @@ public class Dimension {
             return values;
         }
 
+        /**
+         * Assign ordinals (and ancestries) following the same order as {@link #traverse()}.
+         */
+        private void assignOrdinals(List<DimensionValue> sorted, int[] parentAncestries) {
+            ordinal = sorted.size();
+            ancestries = Arrays.copyOf(parentAncestries, parentAncestries.length + 1);
+            ancestries[parentAncestries.length] = ordinal;
+            sorted.add(this);
+
+            subValues.stream().sorted().forEach(dimensionValue -> dimensionValue.assignOrdinals(sorted, ancestries));
+        }
+
         @Override
         public int compareTo(DimensionValue o) {
             return value.compareTo(o.value);
@@ -6,8 +6,6 @@
 package com.yahoo.ycb;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 
 import java.io.*;
 import java.util.*;
@@ -15,12 +13,16 @@ import java.util.*;
 /**
  * Implementation of a Loader from the file system.
  * <p>
- * Configuration files should live in a folder, and are encoded as JSON or YAML files.
+ * Configuration files should live in a folder, and are encoded as JSON or YAML files. Each file is parsed
+ * independently, in parallel.
  */
 public class FileSystemLoader implements Loader {
 
     private final File directoryPath;
 
+    private volatile Map<String, Long> dimensionsTimings = Collections.emptyMap();
+    private volatile Map<String, Long> bundlesTimings = Collections.emptyMap();
+
     /**
      * @param directoryPath Where to look for configuration files.
      */
@@ -28,47 +30,55 @@ public class FileSystemLoader implements Loader {
         this.directoryPath = directoryPath;
     }
 
-    private InputStream getConfigInputStream(FileFilter filter) {
-        File[] files = directoryPath.listFiles(filter);
+    /**
+     * @return Where to look for configuration files.
+     */
+    public File getDirectoryPath() {
+        return directoryPath;
+    }
 
-        try {
-            InputStream result = new ByteArrayInputStream(new byte[]{});
+    private Map<String, LoadUtils.Source> getConfigSources(FileFilter filter) {
+        final File[] files = directoryPath.listFiles(filter);
+        final Map<String, LoadUtils.Source> result = new LinkedHashMap<>();
 
+        if (files != null) {
             for (File file : files) {
-                result = new SequenceInputStream(
-                                    result,
-                                    new SequenceInputStream(
-                                            // make sure we have a line break between files
-                                            new ByteArrayInputStream("\n".getBytes()),
-                                            new FileInputStream(file)));
+                result.put(file.getName(), () -> new FileInputStream(file));
             }
-            return result;
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
         }
+        return result;
     }
 
     public List<Dimension> getDimensions() throws IOException {
-        final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        final Map<String, Long> timings = new LinkedHashMap<>();
 
-        final JsonNode node = mapper.readTree(getConfigInputStream(pathname -> pathname.isFile() &&
+        final JsonNode node = LoadUtils.parseAll(getConfigSources(pathname -> pathname.isFile() &&
                 "dimensions.json".equalsIgnoreCase(pathname.getName()) ||
                 "dimensions.yaml".equalsIgnoreCase(pathname.getName()) ||
-                "dimensions.yml".equalsIgnoreCase(pathname.getName())));
+                "dimensions.yml".equalsIgnoreCase(pathname.getName())), timings);
 
+        dimensionsTimings = timings;
         return LoadUtils.parseDimensions(node);
     }
 
     public Set<Bundle> getBundles() throws IOException {
-        final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        final Map<String, Long> timings = new LinkedHashMap<>();
 
-        final JsonNode node = mapper.readTree(getConfigInputStream(pathname -> pathname.isFile() &&
+        final JsonNode node = LoadUtils.parseAll(getConfigSources(pathname -> pathname.isFile() &&
                 !pathname.getName().startsWith("dimensions.") &&
                 (pathname.getName().endsWith(".json") ||
                         pathname.getName().endsWith(".yml") ||
-                        pathname.getName().endsWith(".yaml"))));
+                        pathname.getName().endsWith(".yaml"))), timings);
 
+        bundlesTimings = timings;
         return LoadUtils.parseBundles(node);
     }
 
+    @Override
+    public Map<String, Long> getParseTimings() {
+        final Map<String, Long> result = new LinkedHashMap<>(dimensionsTimings);
+        result.putAll(bundlesTimings);
+        return result;
+    }
+
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+/**
+ * A Count-Min sketch estimating how frequently keys (represented by their hash) are accessed, used for cache
+ * admission decisions.
+ * <p>
+ * Counters saturate at 15, and are halved periodically so that the estimation reflects recent accesses. The
+ * sketch is not synchronized: concurrent updates may be lost, which only makes the estimation less accurate.
+ */
+final class FrequencySketch {
+
+    private static final int[] SEEDS = {0x97cb3127, 0xb3b8e1d5, 0x5a6c3f0b, 0x2f1b9c45};
+    private static final int MAX_COUNT = 15;
+
+    private final int[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedEntries The expected number of distinct keys being tracked
+     */
+    FrequencySketch(long expectedEntries) {
+        final int width = Integer.highestOneBit((int) Math.max(16, Math.min(1 << 22, expectedEntries)) * 2 - 1);
+
+        table = new int[width];
+        mask = width - 1;
+        sampleSize = 10 * width;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+
+        for (int i = 0; i < SEEDS.length; i++) {
+            final int index = index(hash, i);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+
+        for (int i = 0; i < SEEDS.length; i++) {
+            frequency = Math.min(frequency, table[index(hash, i)]);
+        }
+
+        return frequency;
+    }
+
+    private int index(int hash, int i) {
+        int h = (hash + SEEDS[i]) * SEEDS[i];
+        h ^= h >>> 16;
+        return h & mask;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] >>>= 1;
+        }
+        additions = 0;
+    }
+}
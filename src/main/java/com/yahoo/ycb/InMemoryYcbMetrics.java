@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics kept in memory, e.g. for tests or to be exported periodically. Latencies are kept in histograms of
+ * power of two buckets.
+ */
+public class InMemoryYcbMetrics implements YcbMetrics {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+    private final Histogram missLatency = new Histogram();
+    private final Histogram mergeLatency = new Histogram();
+    private final Map<LoadPhase, Long> loadTimings = new EnumMap<>(LoadPhase.class);
+    private final Map<String, Long> parseTimings = new LinkedHashMap<>();
+
+    @Override
+    public void cacheHit() {
+        hits.increment();
+    }
+
+    @Override
+    public void cacheMiss() {
+        misses.increment();
+    }
+
+    @Override
+    public void cacheEviction() {
+        evictions.increment();
+    }
+
+    @Override
+    public void valueShared() {
+        shared.increment();
+    }
+
+    @Override
+    public void missResolved(long nanos) {
+        missLatency.record(nanos);
+    }
+
+    @Override
+    public void merged(long nanos) {
+        mergeLatency.record(nanos);
+    }
+
+    @Override
+    public synchronized void loadPhase(LoadPhase phase, long nanos) {
+        loadTimings.merge(phase, nanos, Long::sum);
+    }
+
+    @Override
+    public synchronized void fileParsed(String name, long nanos) {
+        parseTimings.merge(name, nanos, Long::sum);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The number of missing values reused from another context instead of being merged again
+     */
+    public long getSharedValues() {
+        return shared.sum();
+    }
+
+    /**
+     * @return The ratio of cache lookups which were hits, 0 if there were no lookups
+     */
+    public double getHitRate() {
+        final long hits = getHits();
+        final long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public Histogram getMissLatency() {
+        return missLatency;
+    }
+
+    public Histogram getMergeLatency() {
+        return mergeLatency;
+    }
+
+    /**
+     * @return The total time spent in each load phase, in nanoseconds
+     */
+    public synchronized Map<LoadPhase, Long> getLoadTimings() {
+        return Collections.unmodifiableMap(new EnumMap<>(loadTimings));
+    }
+
+    /**
+     * @return The total time spent parsing each file, in nanoseconds
+     */
+    public synchronized Map<String, Long> getParseTimings() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(parseTimings));
+    }
+
+    /**
+     * Latencies counted in power of two buckets: bucket i counts the latencies below 2^i nanoseconds (and at least
+     * 2^(i-1)).
+     */
+    public static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+
+        void record(long nanos) {
+            final long value = Math.max(0, nanos);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+            count.increment();
+            total.add(value);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return total.sum();
+        }
+
+        /**
+         * @return The mean latency, in nanoseconds, 0 if nothing was recorded
+         */
+        public double getMeanNanos() {
+            final long count = getCount();
+            return count == 0 ? 0 : (double) getTotalNanos() / count;
+        }
+
+        /**
+         * @param percentile Between 0 and 100
+         * @return An upper bound of the latency percentile (at most twice the actual value), in nanoseconds,
+         * 0 if nothing was recorded
+         */
+        public long getPercentileNanos(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100");
+            }
+
+            long total = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                total += buckets.get(i);
+            }
+            final long rank = (long) Math.ceil(total * percentile / 100);
+
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank && seen > 0) {
+                    return i == 63 ? Long.MAX_VALUE : 1L << i;
+                }
+            }
+            return 0;
+        }
+    }
+}
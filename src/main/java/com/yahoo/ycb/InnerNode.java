@@ -8,57 +8,199 @@ package com.yahoo.ycb;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.NullNode;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.UnaryOperator;
 
 class InnerNode extends LookupTree {
 
-    private Dimension dimension;
-    private final Map<String, LookupTree> edges = new HashMap<>();
+    private final Dimension dimension;
+
+    // children indexed by the dimension value ordinal
+    private final LookupTree[] edges;
+
+    InnerNode(Dimension dimension) {
+        this.dimension = dimension;
+        this.edges = new LookupTree[dimension.size()];
+    }
 
     /**
      * @return A list of leaf children of this Node
      */
     @Override
     protected List<PathLeaf> traverse() {
-        return edges.entrySet().stream()
-                .flatMap(entry -> entry.getValue().traverse().stream()
-                        .map(pathLeaf -> new PathLeaf(pathLeaf, entry.getKey())))
-                .collect(Collectors.toList());
+        final List<PathLeaf> result = new ArrayList<>();
+
+        for (int ordinal = 0; ordinal < edges.length; ordinal++) {
+            if (edges[ordinal] != null) {
+                final String value = dimension.getValue(ordinal);
+                edges[ordinal].traverse().forEach(pathLeaf -> result.add(new PathLeaf(pathLeaf, value)));
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    protected void collectLeaves(String[] values, int level, List<PathLeaf> leaves) {
+        for (int ordinal = 0; ordinal < edges.length; ordinal++) {
+            if (edges[ordinal] != null) {
+                values[level] = dimension.getValue(ordinal);
+                edges[ordinal].collectLeaves(values, level + 1, leaves);
+            }
+        }
+    }
+
+    @Override
+    public JsonNode project(int[] context, int level, String[] path) {
+        final int[] ancestries = dimension.getAncestries(context[level]);
+        final List<JsonNode> layers = new ArrayList<>(ancestries.length);
+
+        for (int ancestor : ancestries) {
+            final LookupTree child = edges[ancestor];
+
+            if (child != null && child.defines(path)) {
+                layers.add(child.project(context, level + 1, path));
+            }
+        }
+
+        // stack the children values instead of merging them, so only the fields actually read get merged
+        final JsonNode delta = OverlayNode.overlay(layers);
+        return delta == null ? NullNode.getInstance() : delta;
+    }
+
+    @Override
+    JsonNode project(int[] context, int level, String[] path, ConcurrentMap<Subtree, JsonNode> memo) {
+        final Subtree key = new Subtree(this, context, level);
+        final JsonNode cached = memo.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final int[] ancestries = dimension.getAncestries(context[level]);
+        final List<JsonNode> layers = new ArrayList<>(ancestries.length);
+
+        for (int ancestor : ancestries) {
+            final LookupTree child = edges[ancestor];
+
+            if (child != null && child.defines(path)) {
+                layers.add(child.project(context, level + 1, path, memo));
+            }
+        }
+
+        final JsonNode delta = OverlayNode.overlay(layers);
+        final JsonNode value = delta == null ? NullNode.getInstance() : delta;
+        final JsonNode previous = memo.putIfAbsent(key, value);
+        return previous == null ? value : previous;
+    }
+
+    @Override
+    protected void projectAll(int[] context, int level, String[][] paths, List<List<JsonNode>> layers,
+                              List<List<LookupTree>> leaves) {
+        final List<List<JsonNode>> children = new ArrayList<>(paths.length);
+        for (int i = 0; i < paths.length; i++) {
+            children.add(new ArrayList<>());
+        }
+
+        for (int ancestor : dimension.getAncestries(context[level])) {
+            final LookupTree child = edges[ancestor];
+
+            if (child != null && child.definesAny(paths)) {
+                child.projectAll(context, level + 1, paths, children, leaves);
+            }
+        }
+
+        // fold the children values of each path, as project does
+        for (int i = 0; i < paths.length; i++) {
+            if (!children.get(i).isEmpty()) {
+                layers.get(i).add(OverlayNode.overlay(children.get(i)));
+            }
+        }
     }
 
     @Override
-    public JsonNode project(Map<String, String> context, String[] path) {
-        JsonNode delta = NullNode.getInstance();
+    protected void writeSnapshot(Snapshot.Writer writer) {
+        int edgeCount = 0;
+        for (LookupTree edge : edges) {
+            if (edge != null) {
+                edgeCount++;
+            }
+        }
 
-        for (String value : dimension.getAncestries(context.getOrDefault(dimension.getName(), ANY_VALUE))) {
-            final LookupTree child = edges.get(value);
+        writer.writeInner(edgeCount);
+        for (int ordinal = 0; ordinal < edges.length; ordinal++) {
+            if (edges[ordinal] != null) {
+                writer.writeEdge(ordinal);
+                edges[ordinal].writeSnapshot(writer);
+            }
+        }
+    }
 
-            if (child != null) {
-                delta = mergeDelta(delta, child.project(context, path));
+    @Override
+    protected void markEdges(int level, boolean[][] significant) {
+        for (int ordinal = 0; ordinal < edges.length; ordinal++) {
+            if (edges[ordinal] != null) {
+                significant[level][ordinal] = true;
+                edges[ordinal].markEdges(level + 1, significant);
             }
         }
+    }
 
-        return delta;
+    @Override
+    protected void dropBundles() {
+        for (LookupTree edge : edges) {
+            if (edge != null) {
+                edge.dropBundles();
+            }
+        }
     }
 
     @Override
-    protected void insert(List<Dimension> dimensions, Map<String, String> context, JsonNode delta) {
-        dimension = dimensions.get(0);
+    protected void insert(List<Dimension> dimensions, Bundle bundle) {
+        assert dimensions.get(0) == dimension;
 
-        String contextValue = context.getOrDefault(dimension.getName(), ANY_VALUE);
+        final int ordinal = dimension.getOrdinal(bundle.getContext().getOrDefault(dimension.getName(), ANY_VALUE));
 
-        LookupTree child = edges.get(contextValue);
+        LookupTree child = edges[ordinal];
         if (child == null) {
-            child = dimensions.size() == 1 ? new LeafNode() : new InnerNode();
-            edges.put(contextValue, child);
+            child = dimensions.size() == 1 ? new LeafNode() : new InnerNode(dimensions.get(1));
+            edges[ordinal] = child;
         }
 
-        child.insert(dimensions.subList(1, dimensions.size()), context, delta);
+        child.insert(dimensions.subList(1, dimensions.size()), bundle);
+        addKeys(bundle.getDelta());
     }
-}
 
+    /**
+     * @param ordinal The dimension value ordinal
+     * @param child   The subtree built for the value
+     */
+    void setEdge(int ordinal, LookupTree child) {
+        edges[ordinal] = child;
+        keys.addAll(child.keys);
+    }
+
+    @Override
+    protected LookupTree update(List<Dimension> dimensions, int level, int[] context, UnaryOperator<List<Bundle>> change) {
+        final int ordinal = context[level];
+
+        LookupTree child = edges[ordinal];
+        if (child == null) {
+            child = level + 1 == dimensions.size() ? new LeafNode() : new InnerNode(dimensions.get(level + 1));
+        }
+
+        final InnerNode result = new InnerNode(dimension);
+        System.arraycopy(edges, 0, result.edges, 0, edges.length);
+        result.edges[ordinal] = child.update(dimensions, level + 1, context, change);
+
+        boolean empty = true;
+        for (LookupTree edge : result.edges) {
+            if (edge != null) {
+                result.keys.addAll(edge.keys);
+                empty = false;
+            }
+        }
+        return empty ? null : result;
+    }
+}
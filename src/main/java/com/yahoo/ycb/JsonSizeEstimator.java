@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Rough estimation of the heap retained by Json trees, used for memory budgets.
+ * <p>
+ * The estimation assumes a 64 bits JVM with compressed pointers, and does not account for sub trees
+ * shared between different nodes.
+ */
+final class JsonSizeEstimator {
+
+    private static final int NODE_SIZE = 16;
+    private static final int STRING_SIZE = 40;
+    private static final int MAP_ENTRY_SIZE = 40;
+    private static final int CONTAINER_SIZE = 64;
+    private static final int REFERENCE_SIZE = 4;
+
+    private JsonSizeEstimator() {
+    }
+
+    static long estimate(String value) {
+        return STRING_SIZE + 2L * value.length();
+    }
+
+    static long estimate(JsonNode node) {
+        if (node == null) {
+            return 0;
+        } else if (node instanceof OverlayNode) {
+            return ((OverlayNode) node).estimateSize();
+        }
+
+        switch (node.getNodeType()) {
+            case OBJECT: {
+                long size = NODE_SIZE + CONTAINER_SIZE;
+                for (final Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+                    final Map.Entry<String, JsonNode> field = fields.next();
+                    size += MAP_ENTRY_SIZE + estimate(field.getKey()) + estimate(field.getValue());
+                }
+                return size;
+            }
+            case ARRAY: {
+                long size = NODE_SIZE + CONTAINER_SIZE;
+                for (final JsonNode element : node) {
+                    size += REFERENCE_SIZE + estimate(element);
+                }
+                return size;
+            }
+            case STRING:
+                return NODE_SIZE + estimate(node.textValue());
+            case NUMBER:
+                return node.isBigDecimal() || node.isBigInteger() ? NODE_SIZE + STRING_SIZE : NODE_SIZE + 8;
+            case BOOLEAN:
+            case NULL:
+            case MISSING:
+                // singletons
+                return 0;
+            default:
+                return NODE_SIZE;
+        }
+    }
+}
@@ -7,14 +7,32 @@ package com.yahoo.ycb;
 
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.google.common.collect.Lists;
 
 import java.util.*;
+import java.util.function.UnaryOperator;
 
 class LeafNode extends LookupTree {
 
     private JsonNode delta;
 
+    // the bundles merged in this leaf, in insertion order, to merge the leaf again when bundles change (or null if
+    // dropped). The merged delta shares the unchanged subtrees of the bundles, so keeping them only costs the objects
+    // overridden by another bundle of the leaf
+    private List<Bundle> bundles = new ArrayList<>();
+
+    LeafNode() {
+    }
+
+    /**
+     * @param delta   The merged delta of the bundles
+     * @param bundles The bundles merged in this leaf, in insertion order
+     */
+    LeafNode(JsonNode delta, List<Bundle> bundles) {
+        this.delta = delta;
+        this.bundles.addAll(bundles);
+        addKeys(delta);
+    }
+
     /**
      * @return A list of leaf children of this Node
      */
@@ -24,22 +42,53 @@ class LeafNode extends LookupTree {
     }
 
     @Override
-    public JsonNode project(Map<String, String> context, String[] path) {
-        JsonNode current = delta;
-        for (String part : path) {
-            if (current == null) {
-                break;
-            }
-            current = current.get(part);
+    protected void collectLeaves(String[] values, int level, List<PathLeaf> leaves) {
+        leaves.add(new PathLeaf(delta, values));
+    }
+
+    @Override
+    public JsonNode project(int[] context, int level, String[] path) {
+        return get(delta, path);
+    }
+
+    @Override
+    protected void writeSnapshot(Snapshot.Writer writer) {
+        if (bundles == null) {
+            throw new IllegalStateException("The bundles of the configuration were not retained");
         }
-        return current;
+        writer.writeLeaf(delta, bundles);
+    }
+
+    @Override
+    protected void markEdges(int level, boolean[][] significant) {
+    }
+
+    @Override
+    protected void dropBundles() {
+        bundles = null;
     }
 
     @Override
-    protected void insert(List<Dimension> dimensions, Map<String, String> context, JsonNode delta) {
+    protected void insert(List<Dimension> dimensions, Bundle bundle) {
         assert dimensions.isEmpty();
 
-        this.delta = mergeDelta(this.delta, delta);
+        bundles.add(bundle);
+        this.delta = mergeDelta(this.delta, bundle.getDelta());
+        addKeys(bundle.getDelta());
     }
 
+    @Override
+    protected LookupTree update(List<Dimension> dimensions, int level, int[] context, UnaryOperator<List<Bundle>> change) {
+        if (bundles == null) {
+            throw new IllegalStateException("The bundles of the configuration were not retained");
+        }
+        final List<Bundle> updated = change.apply(Collections.unmodifiableList(bundles));
+        if (updated.isEmpty()) {
+            return null;
+        }
+
+        final LeafNode result = new LeafNode();
+        updated.forEach(bundle -> result.insert(Collections.emptyList(), bundle));
+        return result;
+    }
 }
@@ -7,17 +7,77 @@ package com.yahoo.ycb;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.stream.IntStream;
 
 class LoadUtils {
 
+    // shared by all loaders: parsing is thread safe once the mapper is configured
+    static final ObjectMapper MAPPER = new ObjectMapper(new YAMLFactory());
+
+    /**
+     * A configuration file, opened on demand.
+     */
+    @FunctionalInterface
+    interface Source {
+        InputStream open() throws IOException;
+    }
+
     private LoadUtils() {
     }
 
+    /**
+     * Parses each source independently (and in parallel), then concatenates the top level arrays of the sources in
+     * order, as if the sources were a single document.
+     *
+     * @param sources The sources by name, in order
+     * @param timings Receives the parse time of each source, in nanoseconds, in the same order
+     * @return The elements of all sources
+     * @throws IOException If a source can't be read or is not an array, naming the source
+     */
+    static ArrayNode parseAll(Map<String, Source> sources, Map<String, Long> timings) throws IOException {
+        final List<String> names = new ArrayList<>(sources.keySet());
+        final JsonNode[] nodes = new JsonNode[names.size()];
+        final long[] nanos = new long[names.size()];
+
+        try {
+            IntStream.range(0, nodes.length).parallel().forEach(index -> {
+                final String name = names.get(index);
+                final long start = System.nanoTime();
+                try (InputStream input = sources.get(name).open()) {
+                    nodes[index] = MAPPER.readTree(input);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(new IOException("Error parsing " + name + ": " + e.getMessage(), e));
+                }
+                nanos[index] = System.nanoTime() - start;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        final ArrayNode result = MAPPER.createArrayNode();
+        for (int i = 0; i < nodes.length; i++) {
+            timings.put(names.get(i), nanos[i]);
+
+            // empty files (or only comments) don't define anything
+            if (nodes[i] == null || nodes[i].isMissingNode() || nodes[i].isNull()) {
+                continue;
+            }
+            if (!nodes[i].isArray()) {
+                throw new IOException("Error parsing " + names.get(i) + ": Expecting array.");
+            }
+            result.addAll((ArrayNode) nodes[i]);
+        }
+        return result;
+    }
+
     protected static List<Dimension> parseDimensions(JsonNode node) throws IOException {
         if (!node.isArray()) {
             throw new IOException("Expecting array.");
@@ -74,7 +134,7 @@ class LoadUtils {
     }
 
     protected static Set<Bundle> parseBundles(JsonNode node) throws IOException {
-        final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        final ObjectMapper mapper = MAPPER;
 
         if (!node.isArray()) {
             throw new IOException("Expecting array.");
@@ -22,4 +22,12 @@ public interface Loader {
 
     Set<Bundle> getBundles() throws IOException;
 
+    /**
+     * @return The time spent parsing each file by the last calls to {@link #getDimensions()} and
+     * {@link #getBundles()}, in nanoseconds, by file name (empty if the loader does not parse files)
+     */
+    default Map<String, Long> getParseTimings() {
+        return Collections.emptyMap();
+    }
+
 }
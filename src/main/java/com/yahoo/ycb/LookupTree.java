@@ -13,6 +13,14 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -23,6 +31,14 @@ abstract class LookupTree {
      */
     public static final String ANY_VALUE = "*";
 
+    private static final AtomicLong IDS = new AtomicLong();
+
+    // index of the top level keys defined by any delta of this subtree, to skip subtrees which can't contribute
+    protected final Set<String> keys = new HashSet<>();
+
+    // never reused: updates copy the changed nodes, so the same leaf always contributes the same values
+    private final long id = IDS.incrementAndGet();
+
     public static LookupTree create(Loader loader, Map<String, String> fixedContext) throws IOException {
         return create(loader.getDimensions(), loader.getBundles(), fixedContext);
     }
@@ -34,121 +50,315 @@ abstract class LookupTree {
      * @return The Lookup Tree
      */
     public static LookupTree create(final List<Dimension> dimensions, Set<Bundle> bundles, final Map<String, String> fixedContext) {
+        return create(dimensions, bundles, fixedContext, null);
+    }
+
+    /**
+     * Builds the subtree of each value of the first dimension as a separate task. The tree is identical to the one
+     * built sequentially, since bundles are always inserted in the same order within a subtree.
+     *
+     * @param dimensions   The list of dimensions
+     * @param bundles      The list of configuration bundles (associations of contexts with deltas)
+     * @param fixedContext fixed context, i.e. specify a subset of context that all projections will adhere.
+     * @param executor     Executes the subtree builds, or null to build the tree in the calling thread
+     * @return The Lookup Tree
+     */
+    public static LookupTree create(final List<Dimension> dimensions, Set<Bundle> bundles, final Map<String, String> fixedContext,
+                                    Executor executor) {
+        return create(dimensions, bundles, fixedContext, executor, YcbMetrics.NOOP);
+    }
+
+    /**
+     * @param metrics Receives the time spent sorting and inserting the bundles
+     * @see #create(List, Set, Map, Executor)
+     */
+    static LookupTree create(final List<Dimension> dimensions, Set<Bundle> bundles, final Map<String, String> fixedContext,
+                             Executor executor, YcbMetrics metrics) {
+        final long start = System.nanoTime();
         validateBundles(dimensions, bundles);
 
+        // only insert bundles which are compatible with fixed context, in the correct order (more generic first,
+        // more specific after). This is specially important if we have fixed Context
+        final List<RankedBundle> ranked = rank(dimensions, fixedContext, bundles);
+
+        final long sorted = System.nanoTime();
+        metrics.loadPhase(YcbMetrics.LoadPhase.SORT, sorted - start);
+
+        final LookupTree tree = insert(dimensions, fixedContext, ranked, executor);
+        metrics.loadPhase(YcbMetrics.LoadPhase.INSERT, System.nanoTime() - sorted);
+        return tree;
+    }
+
+    private static LookupTree insert(List<Dimension> dimensions, Map<String, String> fixedContext, List<RankedBundle> ranked,
+                                     Executor executor) {
         // drop dimensions present in the fixed context (so we have a shallower tree).
-        final List<Dimension> actualDimensions = new ArrayList<>();
-        dimensions.forEach(
-                dimension -> {
-                    if (!fixedContext.containsKey(dimension.getName())) {
-                        actualDimensions.add(dimension);
-                    }
-                });
+        final List<Dimension> actualDimensions = treeDimensions(dimensions, fixedContext);
 
         // if the dimensions are empty, create a leaf node
-        final LookupTree node = actualDimensions.isEmpty() ? new LeafNode() : new InnerNode();
+        if (actualDimensions.isEmpty()) {
+            final LookupTree node = new LeafNode();
+            ranked.forEach(bundle -> node.insert(actualDimensions, bundle.bundle));
+            return node;
+        }
 
-        bundles.stream()
-                // make sure we are inserting in the correct order (more generic first, more specific after).
-                // this is specially important if we have fixed Context
-                .sorted(new BundleComparator(dimensions))
+        final InnerNode node = new InnerNode(actualDimensions.get(0));
+        if (executor == null) {
+            // insert (with drop dimensions) the bundle in the tree node
+            ranked.forEach(bundle -> node.insert(actualDimensions, bundle.bundle));
+            return node;
+        }
+
+        // partition by the first dimension value, keeping the insertion order in each partition
+        final int first = dimensions.indexOf(actualDimensions.get(0));
+        final List<List<Bundle>> partitions = new ArrayList<>(Collections.nCopies(actualDimensions.get(0).size(), null));
+        for (RankedBundle bundle : ranked) {
+            final int ordinal = bundle.ordinals[first];
+            if (partitions.get(ordinal) == null) {
+                partitions.set(ordinal, new ArrayList<>());
+            }
+            partitions.get(ordinal).add(bundle.bundle);
+        }
+
+        final List<Dimension> childDimensions = actualDimensions.subList(1, actualDimensions.size());
+        final List<CompletableFuture<LookupTree>> children = new ArrayList<>(partitions.size());
+        for (List<Bundle> partition : partitions) {
+            children.add(partition == null ? null : CompletableFuture.supplyAsync(() -> {
+                final LookupTree child = childDimensions.isEmpty() ? new LeafNode() : new InnerNode(childDimensions.get(0));
+                partition.forEach(bundle -> child.insert(childDimensions, bundle));
+                return child;
+            }, executor));
+        }
 
-                        // only insert bundles which are compatible with fixed context
-                .filter(bundle -> fixedContextMatch(dimensions, fixedContext, bundle.getContext()))
-                .forEach(bundle -> {
-                    // insert (with drop dimensions) the bundle in the tree node
-                    node.insert(actualDimensions, bundle.getContext(), bundle.getDelta());
-                });
+        for (int ordinal = 0; ordinal < children.size(); ordinal++) {
+            if (children.get(ordinal) != null) {
+                try {
+                    node.setEdge(ordinal, children.get(ordinal).join());
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+        }
 
         return node;
     }
 
-    private static void validateBundles(final List<Dimension> dimensions, final Set<Bundle> bundles) {
-        final Map<String, List<String>> dimensionValues = dimensions.stream()
-            .collect(Collectors.toMap(Dimension::getName, Dimension::traverse));
+    /**
+     * Create a copy of a tree with some bundles added and removed. Only the leaves matching the context of the
+     * changed bundles are merged again, everything else is shared with the original tree (which is not modified).
+     *
+     * @param tree         The original tree
+     * @param dimensions   The list of dimensions
+     * @param fixedContext fixed context, i.e. specify a subset of context that all projections will adhere.
+     * @param added        Bundles to add
+     * @param removed      Bundles to remove
+     * @return The updated tree
+     */
+    public static LookupTree update(LookupTree tree, final List<Dimension> dimensions, final Map<String, String> fixedContext,
+                                    Collection<Bundle> added, Collection<Bundle> removed) {
+        validateBundles(dimensions, added);
+
+        final List<Dimension> actualDimensions = treeDimensions(dimensions, fixedContext);
+
+        // group changes by leaf
+        final Map<ContextKey, List<Bundle>> addedByLeaf = groupByLeaf(actualDimensions, fixedContext, dimensions, added);
+        final Map<ContextKey, List<Bundle>> removedByLeaf = groupByLeaf(actualDimensions, fixedContext, dimensions, removed);
+
+        final Set<ContextKey> leaves = new LinkedHashSet<>(addedByLeaf.keySet());
+        leaves.addAll(removedByLeaf.keySet());
+
+        LookupTree result = tree;
+        for (ContextKey leaf : leaves) {
+            final List<Bundle> leafAdded = addedByLeaf.getOrDefault(leaf, Collections.emptyList());
+            final List<Bundle> leafRemoved = removedByLeaf.getOrDefault(leaf, Collections.emptyList());
+
+            result = result.update(actualDimensions, 0, leaf.getOrdinals(), bundles -> {
+                final List<Bundle> updated = new ArrayList<>(bundles);
+                updated.removeAll(leafRemoved);
+                updated.addAll(leafAdded);
+                // stable sort, so bundles with the same specificity keep the original order
+                return updated.stream()
+                        .map(bundle -> new RankedBundle(dimensions, bundle))
+                        .sorted()
+                        .map(bundle -> bundle.bundle)
+                        .collect(Collectors.toList());
+            });
+
+            if (result == null) {
+                result = actualDimensions.isEmpty() ? new LeafNode() : new InnerNode(actualDimensions.get(0));
+            }
+        }
+
+        return result;
+    }
+
+    private static Map<ContextKey, List<Bundle>> groupByLeaf(List<Dimension> actualDimensions, Map<String, String> fixedContext,
+                                                            List<Dimension> dimensions, Collection<Bundle> bundles) {
+        final Map<ContextKey, List<Bundle>> result = new LinkedHashMap<>();
+        final int[][] fixedAncestries = fixedAncestries(dimensions, fixedContext);
+
+        bundles.stream()
+                .map(bundle -> new RankedBundle(dimensions, bundle))
+                .filter(bundle -> bundle.matches(fixedAncestries))
+                .forEach(bundle -> result
+                        .computeIfAbsent(ContextKey.create(actualDimensions, bundle.bundle.getContext()), key -> new ArrayList<>())
+                        .add(bundle.bundle));
+
+        return result;
+    }
+
+    /**
+     * @return The bundles compatible with the fixed context, sorted from the most generic to the most specific
+     */
+    private static List<RankedBundle> rank(List<Dimension> dimensions, Map<String, String> fixedContext, Collection<Bundle> bundles) {
+        final int[][] fixedAncestries = fixedAncestries(dimensions, fixedContext);
+
+        final List<RankedBundle> result = new ArrayList<>(bundles.size());
+        for (Bundle bundle : bundles) {
+            final RankedBundle ranked = new RankedBundle(dimensions, bundle);
+            if (ranked.matches(fixedAncestries)) {
+                result.add(ranked);
+            }
+        }
+
+        // stable sort, so bundles with the same specificity keep the original order
+        result.sort(null);
+        return result;
+    }
+
+    /**
+     * @return For each dimension, the ancestries of the fixed context value, or null if the dimension is not fixed
+     */
+    private static int[][] fixedAncestries(List<Dimension> dimensions, Map<String, String> fixedContext) {
+        final int[][] result = new int[dimensions.size()][];
+        for (int i = 0; i < result.length; i++) {
+            final String value = fixedContext.get(dimensions.get(i).getName());
+            if (value != null) {
+                result[i] = dimensions.get(i).getAncestries(dimensions.get(i).getOrdinal(value));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param dimensions   The list of dimensions
+     * @param fixedContext fixed context, i.e. specify a subset of context that all projections will adhere.
+     * @return The dimensions that are actually part of the tree (i.e. not in the fixed context), in tree order
+     */
+    public static List<Dimension> treeDimensions(final List<Dimension> dimensions, final Map<String, String> fixedContext) {
+        return dimensions.stream()
+                .filter(dimension -> !fixedContext.containsKey(dimension.getName()))
+                .collect(Collectors.toList());
+    }
+
+    private static void validateBundles(final List<Dimension> dimensions, final Collection<Bundle> bundles) {
+        final Map<String, Dimension> dimensionsByName = dimensions.stream()
+            .collect(Collectors.toMap(Dimension::getName, dimension -> dimension));
 
         bundles.forEach(bundle ->
-            bundle.getContext().forEach((dimension, value) -> {
-                if (!dimensionValues.containsKey(dimension)) {
-                    throw new IllegalArgumentException("Unknown dimension: " + dimension);
+            bundle.getContext().forEach((name, value) -> {
+                final Dimension dimension = dimensionsByName.get(name);
+                if (dimension == null) {
+                    throw new IllegalArgumentException("Unknown dimension: " + name);
                 }
-                if (!dimensionValues.get(dimension).contains(value)) {
-                    throw new IllegalArgumentException("Invalid value for dimension: " + dimension + " -> " + value);
+                if (dimension.getOrdinal(value) < 0) {
+                    throw new IllegalArgumentException("Invalid value for dimension: " + name + " -> " + value);
                 }
             })
         );
     }
 
-    private static boolean fixedContextMatch(List<Dimension> dimensions, final Map<String, String> fixedContext, Map<String, String> bundleContext) {
-        final Map<String, List<String>> dimensionAncestries = dimensions.stream()
-                .filter(dimension -> fixedContext.containsKey(dimension.getName()))
-                .collect(Collectors.toMap(Dimension::getName,
-                        dimension -> dimension.getAncestries(fixedContext.get(dimension.getName()))
-                ));
-
-        return bundleContext.entrySet().stream()
-                .filter(entry -> dimensionAncestries.containsKey(entry.getKey()))
-                .allMatch(entry -> dimensionAncestries.get(entry.getKey()).contains(entry.getValue()));
+    /**
+     * @param node The node to start from
+     * @param path The path to follow
+     * @return The value in the path, or null if not found
+     */
+    static JsonNode get(JsonNode node, String[] path) {
+        JsonNode current = node;
+        for (String part : path) {
+            if (current == null) {
+                break;
+            }
+            current = current.get(part);
+        }
+        return current;
     }
 
-
     static JsonNode mergeDelta(JsonNode delta1, JsonNode delta2) throws ValidationException  {
         return mergeDelta(delta1, delta2, false);
     }
 
-    static JsonNode mergeDelta(JsonNode delta1, JsonNode delta2, boolean strictMode) throws ValidationException  {
-        return mergeDelta(delta1, delta2, strictMode, Collections.emptyList());
-    }
-
     /**
+     * Merges two deltas, the values of Json 2 taking precedence. The inputs are never modified: untouched subtrees
+     * are shared with the result, and Json 1 (or Json 2) is returned as is when the other side contributes nothing.
+     *
      * @param delta1 Json 1
      * @param delta2 Json 2
      * @param strictMode If true, will throw an exception if a key exists in Json 2 but not Json 1
      * @return Merged Json
      */
-    static JsonNode mergeDelta(JsonNode delta1, JsonNode delta2, boolean strictMode, List<String> path) throws ValidationException {
+    static JsonNode mergeDelta(JsonNode delta1, JsonNode delta2, boolean strictMode) throws ValidationException {
         if (delta2 == null || delta2.isNull()) {
             return delta1;
         } else if (delta1 != null && delta1.isObject() && delta2.isObject()) {
             // delta 1 and delta 2 are objects
 
-            final ObjectNode result = new ObjectNode(JsonNodeFactory.instance);
-            for (final Iterator<Map.Entry<String, JsonNode>> fields = delta1.fields(); fields.hasNext();) {
-                final Map.Entry<String, JsonNode> field = fields.next();
+            // isEmpty, unlike size, does not materialize overlays
+            if (delta1.isEmpty() && !strictMode) {
+                return delta2;
+            }
 
-                if (delta2.has(field.getKey())) {
-                    final List<String> newPath = new ArrayList<>();
-                    newPath.addAll(path);
-                    newPath.add(field.getKey());
+            // copy of delta 1, only created once a key is actually changed
+            ObjectNode result = null;
 
-                    result.set(field.getKey(), mergeDelta(field.getValue(), delta2.get(field.getKey()), strictMode, newPath));
+            // in strict mode, the errors are reported in the order of the keys of delta 1, then for the first key
+            // missing from delta 1, so delta 1 is walked; otherwise only the keys of delta 2 can change anything
+            final Iterator<Map.Entry<String, JsonNode>> fields = strictMode ? delta1.fields() : delta2.fields();
+            while (fields.hasNext()) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                final JsonNode value1 = strictMode ? field.getValue() : delta1.get(field.getKey());
+                final JsonNode value2 = strictMode ? delta2.get(field.getKey()) : field.getValue();
+                final JsonNode merged;
+
+                if (value2 == null) {
+                    continue;
+                } else if (value1 == null) {
+                    merged = value2;
                 } else {
-                    result.set(field.getKey(), field.getValue());
+                    try {
+                        merged = mergeDelta(value1, value2, strictMode);
+                    } catch (ValidationException e) {
+                        throw e.prependPath(field.getKey());
+                    }
                 }
-            }
-            for (final Iterator<Map.Entry<String, JsonNode>> fields = delta2.fields(); fields.hasNext();) {
-                final Map.Entry<String, JsonNode> field = fields.next();
-
-                if (!result.has(field.getKey())) {
-                    final List<String> newPath = new ArrayList<>();
-                    newPath.addAll(path);
-                    newPath.add(field.getKey());
 
-                    if (strictMode) {
-                        throw new ValidationException(newPath, ValidationError.Reason.MISSING_MASTER_PROPERTY);
+                if (merged != value1) {
+                    if (result == null) {
+                        result = new ObjectNode(JsonNodeFactory.instance);
+                        result.setAll((ObjectNode) delta1);
                     }
+                    result.set(field.getKey(), merged);
+                }
+            }
 
-                    result.set(field.getKey(), field.getValue());
+            if (strictMode) {
+                for (final Iterator<String> names = delta2.fieldNames(); names.hasNext();) {
+                    final String name = names.next();
+                    if (delta1.get(name) == null) {
+                        throw new ValidationException(ValidationError.Reason.MISSING_MASTER_PROPERTY).prependPath(name);
+                    }
                 }
             }
 
-            return result;
+            return result == null ? delta1 : result;
         } else {
             // delta 1 and delta 2 are not objects
 
-            if (strictMode && delta1 != null && !delta2.isNull() && delta1.getClass() != delta2.getClass()) {
+            if (strictMode && delta1 != null && delta1.getClass() != delta2.getClass()) {
                 // delta 1 and delta 2 classes are different, and delta2 is not json null (json null is allowed to inhabit any type)
-                throw new ValidationException(path, ValidationError.Reason.REPLACING_DIFFERENT_TYPES);
+                throw new ValidationException(ValidationError.Reason.REPLACING_DIFFERENT_TYPES);
             }
 
             return delta2;
@@ -160,12 +370,194 @@ abstract class LookupTree {
      */
     protected abstract List<PathLeaf> traverse();
 
-    public abstract JsonNode project(Map<String, String> context, String[] path);
+    /**
+     * @param context The ordinal of the context value of each dimension of the tree, in tree order
+     * @param level   The index in the context of this node dimension
+     * @param path    The path to project
+     * @return The projected value
+     */
+    public abstract JsonNode project(int[] context, int level, String[] path);
+
+    /**
+     * Same as {@link #project(int[], int, String[])}, reusing the values of the subtrees already projected for the
+     * same context values: the value of a subtree only depends on the values of its level and below.
+     *
+     * @param context The ordinal of the context value of each dimension of the tree, in tree order
+     * @param level   The index in the context of this node dimension
+     * @param path    The path to project
+     * @param memo    The values of the subtrees projected so far, for this path
+     * @return The projected value
+     */
+    JsonNode project(int[] context, int level, String[] path, ConcurrentMap<Subtree, JsonNode> memo) {
+        return project(context, level, path);
+    }
+
+    /**
+     * Projects several paths in a single descent: the leaves matching the context are visited once, and each
+     * contributes its value of every path. Like {@link #project(int[], int, String[])}, the values are folded one
+     * level at a time (a value replacing an object below some level does not replace the objects merged from the
+     * levels below), so this node appends at most one value per path, which is the projected value.
+     *
+     * @param context The ordinal of the context value of each dimension of the tree, in tree order
+     * @param level   The index in the context of this node dimension
+     * @param paths   The paths to project
+     * @param layers  Receives the value of this node for each path it defines
+     * @param leaves  Receives the leaves contributing to each path, in merge order (null if not needed)
+     */
+    protected void projectAll(int[] context, int level, String[][] paths, List<List<JsonNode>> layers,
+                              List<List<LookupTree>> leaves) {
+        for (int i = 0; i < paths.length; i++) {
+            if (defines(paths[i])) {
+                final JsonNode value = project(context, level, paths[i]);
+                if (value != null) {
+                    layers.get(i).add(value);
+                    if (leaves != null) {
+                        leaves.get(i).add(this);
+                    }
+                }
+            }
+        }
+    }
+
+    protected abstract void insert(List<Dimension> dimensions, Bundle bundle);
 
-    protected abstract void insert(List<Dimension> dimensions, Map<String, String> context, JsonNode delta);
+    /**
+     * Copy on write update of the bundles of a leaf.
+     *
+     * @param dimensions The dimensions of the tree, in tree order
+     * @param level      The index in dimensions of this node dimension
+     * @param context    The ordinal of the leaf context value of each dimension of the tree
+     * @param change     Computes the new bundles of the leaf (in insertion order) from the current ones
+     * @return The updated copy of this node, or null if the node has no bundles anymore
+     */
+    protected abstract LookupTree update(List<Dimension> dimensions, int level, int[] context,
+                                         UnaryOperator<List<Bundle>> change);
 
-    public List<ValidationError> validate() {
-        final List<PathLeaf> pathLeafs = traverse();
+    /**
+     * @param writer Receives this node and its children, in depth first order
+     */
+    protected abstract void writeSnapshot(Snapshot.Writer writer);
+
+    /**
+     * Marks the values having an edge in some node of each level.
+     *
+     * @param level       The index in the tree dimensions of this node dimension
+     * @param significant The marked ordinals of each tree dimension
+     */
+    protected abstract void markEdges(int level, boolean[][] significant);
+
+    /**
+     * Releases the bundles kept by the leaves to merge them again, once the tree is known to never be updated (nor
+     * written as a snapshot). Only called before the tree is published.
+     */
+    protected void dropBundles() {
+    }
+
+    /**
+     * A value is significant if some bundle is defined for it: contexts only differing by non significant values
+     * (replaced by their nearest significant ancestry) project the same configuration.
+     *
+     * @param dimensions The dimensions of the tree, in tree order
+     * @return The significant ordinals of each dimension (the root value is always significant)
+     */
+    boolean[][] significantValues(List<Dimension> dimensions) {
+        final boolean[][] significant = new boolean[dimensions.size()][];
+        for (int i = 0; i < significant.length; i++) {
+            significant[i] = new boolean[dimensions.get(i).size()];
+            significant[i][0] = true;
+        }
+        markEdges(0, significant);
+        return significant;
+    }
+
+    /**
+     * Maps every value to its nearest significant ancestry (itself if significant): contexts with the same
+     * canonical values project the same configuration.
+     *
+     * @param dimensions The dimensions of the tree, in tree order
+     * @return The canonical ordinal of each ordinal of each dimension
+     * @see #significantValues(List)
+     */
+    int[][] canonicalValues(List<Dimension> dimensions) {
+        final boolean[][] significant = significantValues(dimensions);
+        final int[][] canonical = new int[dimensions.size()][];
+
+        for (int i = 0; i < canonical.length; i++) {
+            final Dimension dimension = dimensions.get(i);
+            canonical[i] = new int[dimension.size()];
+
+            for (int ordinal = 0; ordinal < canonical[i].length; ordinal++) {
+                final int[] ancestries = dimension.getAncestries(ordinal);
+                int ancestor = ancestries.length - 1;
+                while (!significant[i][ancestries[ancestor]]) {
+                    ancestor--;
+                }
+                canonical[i][ordinal] = ancestries[ancestor];
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * @return The identity of this node, unique in the JVM
+     */
+    long getId() {
+        return id;
+    }
+
+    /**
+     * @return The top level keys defined by any delta of the tree
+     */
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * @param path The projected path
+     * @return False if no delta of this subtree defines the first segment of the path
+     */
+    boolean defines(String[] path) {
+        return path.length == 0 || keys.contains(path[0]);
+    }
+
+    /**
+     * @param paths The projected paths
+     * @return False if no delta of this subtree defines the first segment of any path
+     */
+    boolean definesAny(String[][] paths) {
+        for (String[] path : paths) {
+            if (defines(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void addKeys(JsonNode delta) {
+        if (delta != null) {
+            delta.fieldNames().forEachRemaining(keys::add);
+        }
+    }
+
+    /**
+     * Appends the leaves of this subtree, in traverse order, without copying the context values at every level.
+     *
+     * @param values The values of the dimensions above this node, in tree order (filled up to level)
+     * @param level  The index in the tree dimensions of this node dimension
+     * @param leaves The collected leaves
+     */
+    protected abstract void collectLeaves(String[] values, int level, List<PathLeaf> leaves);
+
+    /**
+     * Strict merges every delta against the "master" delta, in parallel.
+     *
+     * @param dimensions The dimensions of the tree, in tree order
+     * @param options    The validation options
+     * @return The errors, in traverse order
+     */
+    public List<ValidationError> validate(List<Dimension> dimensions, ValidationOptions options) {
+        final List<PathLeaf> pathLeafs = new ArrayList<>();
+        collectLeaves(new String[dimensions.size()], 0, pathLeafs);
 
         // find the "Master" delta
         final JsonNode masterDelta = pathLeafs.stream()
@@ -174,32 +566,149 @@ abstract class LookupTree {
                 .findFirst()
                 .orElse(NullNode.getInstance());
 
-        // iterate over all "non-root" deltas
-        return pathLeafs.stream()
+        // validate all "non-root" deltas
+        final PathLeaf[] deltas = pathLeafs.stream()
                 .filter(p -> p.contextValues.stream().anyMatch(v -> !v.equals(ANY_VALUE)))
-                .flatMap(p -> {
-                    try {
-                        mergeDelta(masterDelta, p.getDelta(), true);
-                        return Stream.empty();
-                    } catch (ValidationException e) {
-                        return Stream.of( new ValidationError(e.getPath(), e.getReason(), p.getContextValues()) );
+                .toArray(PathLeaf[]::new);
+
+        final List<ValidationError> errors = options.getPool()
+                .invoke(new ValidationTask(new Validation(masterDelta, deltas, options), 0, deltas.length));
+
+        return errors.size() > options.getMaxErrors() ? new ArrayList<>(errors.subList(0, options.getMaxErrors())) : errors;
+    }
+
+    /**
+     * The state shared by the tasks of a validation.
+     */
+    private static final class Validation {
+        private final JsonNode masterDelta;
+        private final PathLeaf[] deltas;
+        private final ValidationOptions options;
+        private final AtomicInteger errorCount = new AtomicInteger();
+        private final AtomicInteger validated = new AtomicInteger();
+
+        Validation(JsonNode masterDelta, PathLeaf[] deltas, ValidationOptions options) {
+            this.masterDelta = masterDelta;
+            this.deltas = deltas;
+            this.options = options;
+        }
+
+        boolean isDone() {
+            return errorCount.get() >= options.getMaxErrors();
+        }
+
+        ValidationError validate(PathLeaf p) {
+            try {
+                mergeDelta(masterDelta, p.getDelta(), true);
+                return null;
+            } catch (ValidationException e) {
+                errorCount.incrementAndGet();
+                return new ValidationError(e.getPath(), e.getReason(), p.getContextValues());
+            }
+        }
+
+        void progress(int count) {
+            final int total = validated.addAndGet(count);
+            if (options.getProgressListener() != null) {
+                options.getProgressListener().progress(total, deltas.length);
+            }
+        }
+    }
+
+    /**
+     * Validates a range of deltas, splitting it in halves while it is larger than the threshold.
+     */
+    private static final class ValidationTask extends RecursiveTask<List<ValidationError>> {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 64;
+
+        private final Validation validation;
+        private final int from;
+        private final int to;
+
+        ValidationTask(Validation validation, int from, int to) {
+            this.validation = validation;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<ValidationError> compute() {
+            if (to - from <= THRESHOLD) {
+                final List<ValidationError> errors = new ArrayList<>();
+                int count = 0;
+                for (int i = from; i < to && !validation.isDone(); i++, count++) {
+                    final ValidationError error = validation.validate(validation.deltas[i]);
+                    if (error != null) {
+                        errors.add(error);
                     }
-                })
-                .collect(Collectors.toList());
+                }
+                validation.progress(count);
+                return errors;
+            }
+
+            final int middle = (from + to) >>> 1;
+            final ValidationTask first = new ValidationTask(validation, from, middle);
+            final ValidationTask second = new ValidationTask(validation, middle, to);
+            second.fork();
+
+            // keep the errors in traverse order
+            final List<ValidationError> errors = first.compute();
+            errors.addAll(second.join());
+            return errors;
+        }
+    }
+
+    /**
+     * A subtree along with the context values of its level and below, i.e. everything its projection depends on.
+     */
+    static final class Subtree {
+        private final LookupTree node;
+        private final int[] values;
+        private final int hash;
+
+        Subtree(LookupTree node, int[] context, int level) {
+            this.node = node;
+            this.values = Arrays.copyOfRange(context, level, context.length);
+            this.hash = 31 * System.identityHashCode(node) + Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Subtree)) {
+                return false;
+            }
+            final Subtree other = (Subtree) o;
+            return node == other.node && hash == other.hash && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
     }
 
     protected static class ValidationException extends RuntimeException {
-        private final List<String> path;
+        // built while unwinding, from the failing key up to the root
+        private final Deque<String> path = new ArrayDeque<>();
         private final ValidationError.Reason reason;
 
 
-        public ValidationException(List<String> path, ValidationError.Reason reason) {
-            this.path = path;
+        public ValidationException(ValidationError.Reason reason) {
+            super(null, null, false, false);
             this.reason = reason;
         }
 
+        ValidationException prependPath(String key) {
+            path.addFirst(key);
+            return this;
+        }
+
         public List<String> getPath() {
-            return path;
+            return new ArrayList<>(path);
         }
 
         public ValidationError.Reason getReason() {
@@ -219,6 +728,19 @@ abstract class LookupTree {
             this.delta = delta;
         }
 
+        /**
+         * @param delta  The delta of the leaf
+         * @param values The values of the dimensions of the leaf, in tree order
+         */
+        public PathLeaf(JsonNode delta, String[] values) {
+            // same order as traverse: the values of the deepest dimensions first
+            contextValues = new ArrayList<>(values.length);
+            for (int i = values.length - 1; i >= 0; i--) {
+                contextValues.add(values[i]);
+            }
+            this.delta = delta;
+        }
+
         public PathLeaf(PathLeaf child, String contextValue) {
             contextValues = new ArrayList<>();
             contextValues.addAll(child.getContextValues());
@@ -237,34 +759,58 @@ abstract class LookupTree {
     }
 
     /**
-     * Compare two contexts (given dimensions) based on which is more generic (lower) and more specific (bigger).
+     * A bundle compiled against the dimensions, ordered by specificity: the depth of its value in each dimension,
+     * the first dimension being the most significant. Bundles applying to the same leaf have their values of each
+     * dimension on the same branch, so the more generic bundle always comes first.
      */
-    private static class BundleComparator implements Comparator<Bundle> {
-        private final List<Dimension> dimensions;
+    private static final class RankedBundle implements Comparable<RankedBundle> {
+        private final Bundle bundle;
 
-        public BundleComparator(List<Dimension> dimensions) {
-            this.dimensions = dimensions;
+        // the ordinal of the value of each dimension
+        private final int[] ordinals;
+
+        // the depth of the value of each dimension
+        private final int[] depths;
+
+        RankedBundle(List<Dimension> dimensions, Bundle bundle) {
+            this.bundle = bundle;
+            this.ordinals = new int[dimensions.size()];
+            this.depths = new int[dimensions.size()];
+
+            for (int i = 0; i < ordinals.length; i++) {
+                final Dimension dimension = dimensions.get(i);
+                ordinals[i] = dimension.getOrdinal(bundle.getContext().getOrDefault(dimension.getName(), ANY_VALUE));
+                depths[i] = dimension.getAncestries(ordinals[i]).length - 1;
+            }
+        }
+
+        /**
+         * @param fixedAncestries The ancestries of the fixed context value of each dimension (null if not fixed)
+         * @return true if the value of every fixed dimension is an ancestry of the fixed value
+         */
+        boolean matches(int[][] fixedAncestries) {
+            for (int i = 0; i < ordinals.length; i++) {
+                if (fixedAncestries[i] != null && !contains(fixedAncestries[i], ordinals[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean contains(int[] values, int value) {
+            for (int v : values) {
+                if (v == value) {
+                    return true;
+                }
+            }
+            return false;
         }
 
         @Override
-        public int compare(Bundle b1, Bundle b2) {
-            final Map<String, String> c1 = b1.getContext();
-            final Map<String, String> c2 = b2.getContext();
-
-            for (Dimension dimension : dimensions) {
-                final String v1 = c1.getOrDefault(dimension.getName(), ANY_VALUE);
-                final String v2 = c2.getOrDefault(dimension.getName(), ANY_VALUE);
-
-                if (!v1.equals(v2)) {
-
-                    if (dimension.getAncestries(v1).contains(v2)) {
-                        // b1 is more specific (bigger) than v2
-                        return 1;
-                    } else if (dimension.getAncestries(v2).contains(v1)) {
-                        // b1 is more generic (less) than v2
-                        return -1;
-                    }
-                    // else they are in different branch
+        public int compareTo(RankedBundle other) {
+            for (int i = 0; i < depths.length; i++) {
+                if (depths[i] != other.depths[i]) {
+                    return depths[i] < other.depths[i] ? -1 : 1;
                 }
             }
             return 0;
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * Leaf of a memory mapped snapshot: the deltas stay encoded in the mapped file (see {@link BinaryJson}), and only
+ * the projected values are decoded, by following the path in place. Decoded values are not retained by the leaf,
+ * hot values are kept by the projection cache instead.
+ * <p>
+ * Validation and snapshot writing decode the whole deltas. Updating a mapped leaf (see
+ * {@link Configuration#applyBundleChanges(Collection, Collection)}) decodes its bundles into a heap {@link LeafNode}.
+ */
+class MappedLeafNode extends LookupTree {
+
+    private final List<Dimension> dimensions;
+
+    // the structure section, and the position of the bundles of this leaf in it
+    private final ByteBuffer struct;
+    private final int bundlesPosition;
+
+    // the data section, and the offset of the merged delta in it
+    private final ByteBuffer data;
+    private final int ref;
+
+    /**
+     * @param dimensions      The list of dimensions of the snapshot
+     * @param struct          The structure section of the snapshot
+     * @param bundlesPosition The position of the bundles of this leaf in the structure section
+     * @param data            The data section of the snapshot
+     * @param ref             The offset of the merged delta in the data section, or -1 for no delta
+     */
+    MappedLeafNode(List<Dimension> dimensions, ByteBuffer struct, int bundlesPosition, ByteBuffer data, int ref) {
+        this.dimensions = dimensions;
+        this.struct = struct;
+        this.bundlesPosition = bundlesPosition;
+        this.data = data;
+        this.ref = ref;
+
+        if (ref >= 0) {
+            keys.addAll(BinaryJson.keys(data, ref));
+        }
+    }
+
+    JsonNode getDelta() {
+        return Snapshot.readDelta(data, ref);
+    }
+
+    List<Bundle> getBundles() {
+        return readBundles(new HashMap<>());
+    }
+
+    private List<Bundle> readBundles(Map<Integer, JsonNode> decoded) {
+        final List<Bundle> bundles = new ArrayList<>();
+        Snapshot.readBundles(struct, bundlesPosition, dimensions,
+                bundleRef -> decoded.computeIfAbsent(bundleRef, position -> Snapshot.readDelta(data, position)), bundles);
+        return bundles;
+    }
+
+    @Override
+    protected List<PathLeaf> traverse() {
+        return Collections.singletonList(new PathLeaf(getDelta()));
+    }
+
+    @Override
+    protected void collectLeaves(String[] values, int level, List<PathLeaf> leaves) {
+        leaves.add(new PathLeaf(getDelta(), values));
+    }
+
+    @Override
+    protected void writeSnapshot(Snapshot.Writer writer) {
+        // decode the merged delta along with the bundles, so deltas shared between them are written once
+        final Map<Integer, JsonNode> decoded = new HashMap<>();
+        final List<Bundle> bundles = readBundles(decoded);
+        writer.writeLeaf(ref < 0 ? null : decoded.computeIfAbsent(ref, position -> Snapshot.readDelta(data, position)), bundles);
+    }
+
+    @Override
+    protected void markEdges(int level, boolean[][] significant) {
+    }
+
+    @Override
+    public JsonNode project(int[] context, int level, String[] path) {
+        if (ref < 0) {
+            return null;
+        }
+
+        final byte[][] keys = new byte[path.length][];
+        for (int i = 0; i < path.length; i++) {
+            keys[i] = path[i].getBytes(StandardCharsets.UTF_8);
+        }
+
+        final int position = BinaryJson.find(data, ref, keys);
+        return position < 0 ? null : BinaryJson.decode(data, position);
+    }
+
+    @Override
+    protected void insert(List<Dimension> dimensions, Bundle bundle) {
+        throw new UnsupportedOperationException("Mapped leaves are read only");
+    }
+
+    @Override
+    protected LookupTree update(List<Dimension> dimensions, int level, int[] context, UnaryOperator<List<Bundle>> change) {
+        final List<Bundle> updated = change.apply(Collections.unmodifiableList(getBundles()));
+        if (updated.isEmpty()) {
+            return null;
+        }
+
+        final LeafNode result = new LeafNode();
+        updated.forEach(bundle -> result.insert(Collections.emptyList(), bundle));
+        return result;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The merged delta of every context of a list of dimensions, indexed by the context value ordinals.
+ * <p>
+ * Contexts are numbered in the same order {@link Configuration#traverseContexts(List)} enumerates them, i.e. the
+ * first dimension is the most significant one.
+ */
+class Materialization {
+
+    private static final String[] ROOT_PATH = new String[0];
+
+    private final int[] strides;
+    // replaced (never modified) when refreshed, so readers always see fully merged deltas
+    private volatile JsonNode[] deltas;
+    private final YcbMetrics metrics;
+
+    private Materialization(int[] strides, JsonNode[] deltas, YcbMetrics metrics) {
+        this.strides = strides;
+        this.deltas = deltas;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param tree       The lookup tree
+     * @param dimensions The dimensions of the tree, in tree order
+     * @param policy     The materialization policy
+     * @param metrics    Receives the merge latencies
+     * @return The materialization of all contexts, or null if the policy budget does not allow it
+     */
+    static Materialization create(LookupTree tree, List<Dimension> dimensions, MaterializationPolicy policy,
+                                  YcbMetrics metrics) {
+        if (!policy.isEager()) {
+            return null;
+        }
+
+        final int[] strides = new int[dimensions.size()];
+        long count = 1;
+        for (int i = dimensions.size() - 1; i >= 0; i--) {
+            strides[i] = (int) count;
+            count *= dimensions.get(i).size();
+
+            if (count > policy.getMaxContexts() || count > Integer.MAX_VALUE) {
+                return null;
+            }
+        }
+
+        final Materialization materialization = new Materialization(strides, new JsonNode[(int) count], metrics);
+        final JsonNode[] deltas = materialization.deltas;
+        long bytes = 0;
+
+        for (int index = 0; index < deltas.length; index++) {
+            deltas[index] = materialization.merge(tree, materialization.context(index));
+
+            bytes += JsonSizeEstimator.estimate(deltas[index]);
+            if (bytes > policy.getMaxBytes()) {
+                return null;
+            }
+        }
+
+        return materialization;
+    }
+
+    /**
+     * Merge again the deltas of the contexts selected by a predicate.
+     *
+     * @param tree       The (updated) lookup tree
+     * @param dimensions The dimensions of the tree, in tree order
+     * @param contexts   Predicate selecting the contexts to refresh
+     */
+    void refresh(LookupTree tree, List<Dimension> dimensions, Predicate<ContextKey> contexts) {
+        final JsonNode[] refreshed = deltas.clone();
+        for (int index = 0; index < refreshed.length; index++) {
+            final int[] context = context(index);
+
+            if (contexts.test(ContextKey.create(dimensions, context))) {
+                refreshed[index] = merge(tree, context);
+            }
+        }
+        deltas = refreshed;
+    }
+
+    /**
+     * @return The fully merged delta of a context: projections stack the deltas of the leaves lazily, which would
+     * leave every lookup to resolve its field across the layers
+     */
+    private JsonNode merge(LookupTree tree, int[] context) {
+        if (metrics == YcbMetrics.NOOP) {
+            return OverlayNode.materialize(tree.project(context, 0, ROOT_PATH));
+        }
+
+        final long start = System.nanoTime();
+        final JsonNode delta = OverlayNode.materialize(tree.project(context, 0, ROOT_PATH));
+        metrics.merged(System.nanoTime() - start);
+        return delta;
+    }
+
+    private int[] context(int index) {
+        final int[] context = new int[strides.length];
+        int rest = index;
+        for (int i = 0; i < context.length; i++) {
+            context[i] = rest / strides[i];
+            rest = rest % strides[i];
+        }
+        return context;
+    }
+
+    /**
+     * @param key The context key
+     * @return The merged delta of the context, or null if the context has unknown values
+     */
+    JsonNode get(ContextKey key) {
+        final int[] ordinals = key.getOrdinals();
+        int index = 0;
+
+        for (int i = 0; i < strides.length; i++) {
+            if (ordinals[i] < 0) {
+                return null;
+            }
+            index += ordinals[i] * strides[i];
+        }
+
+        return deltas[index];
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+/**
+ * Specifies whether projections should be computed on demand (lazy), or pre-computed for every possible
+ * context when the configuration is loaded (eager).
+ * <p>
+ * Eager materialization trades memory and load time for predictable projection latency: every context
+ * of the (non fixed) dimensions is merged once at load time, so projecting becomes a single indexed lookup.
+ * When the number of contexts or the estimated size of the merged deltas exceed the policy budget, the
+ * configuration falls back to lazy projections.
+ * <p>
+ * Values of materialized contexts are read from the fully merged configuration, therefore they may only differ
+ * from lazy projections when a value is replaced by one of a different type (see {@link Configuration#validate()}).
+ */
+public final class MaterializationPolicy {
+
+    private static final MaterializationPolicy LAZY = new MaterializationPolicy(false, 0, 0);
+
+    private final boolean eager;
+    private final long maxContexts;
+    private final long maxBytes;
+
+    private MaterializationPolicy(boolean eager, long maxContexts, long maxBytes) {
+        this.eager = eager;
+        this.maxContexts = maxContexts;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return The default policy, where projections are computed (and cached) on demand
+     */
+    public static MaterializationPolicy lazy() {
+        return LAZY;
+    }
+
+    /**
+     * @param maxContexts Maximum number of contexts to materialize
+     * @return A policy that materializes all contexts, as long as there are at most maxContexts
+     */
+    public static MaterializationPolicy eager(long maxContexts) {
+        return eager(maxContexts, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxContexts Maximum number of contexts to materialize
+     * @param maxBytes    Maximum (estimated) size in bytes of all materialized deltas
+     * @return A policy that materializes all contexts, as long as both budgets are respected
+     */
+    public static MaterializationPolicy eager(long maxContexts, long maxBytes) {
+        if (maxContexts < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("Materialization budget must not be negative");
+        }
+        return new MaterializationPolicy(true, maxContexts, maxBytes);
+    }
+
+    public boolean isEager() {
+        return eager;
+    }
+
+    public long getMaxContexts() {
+        return maxContexts;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Read only Json object stacking the object values of several layers, the later layers taking precedence.
+ * <p>
+ * This is the lazy equivalent of folding the layers with {@link LookupTree#mergeDelta(JsonNode, JsonNode)}:
+ * {@link #get(String)} only resolves the requested field across the layers, and the merged fields are only
+ * materialized when the object is iterated, compared or serialized. Any modification throws
+ * {@link UnsupportedOperationException}.
+ */
+// ObjectNode narrows the generic JsonNode.deepCopy() to ObjectNode, which is reported on every subclass
+@SuppressWarnings("unchecked")
+final class OverlayNode extends ObjectNode {
+
+    private static final long serialVersionUID = 1L;
+
+    // estimation of the overlay node, its layers map, list and resolved fields map
+    private static final int OVERLAY_SIZE = 160;
+    // estimation of the reference to a layer
+    private static final int LAYER_SIZE = 4;
+
+    private final Layers layers;
+    private final long size;
+
+    private OverlayNode(Layers layers) {
+        super(JsonNodeFactory.instance, layers);
+        this.layers = layers;
+
+        // the layers which are not overlays are values of the (immutable) leaves, already retained by the tree:
+        // only the nested overlays, created for this one, are retained by it
+        long size = OVERLAY_SIZE;
+        for (final JsonNode object : layers.objects) {
+            size += object instanceof OverlayNode ? ((OverlayNode) object).size : LAYER_SIZE;
+        }
+        this.size = size;
+    }
+
+    /**
+     * @param layers The values to stack, least specific first (null entries are ignored)
+     * @return The value equivalent to merging the layers in order, or null if no layer has a value
+     */
+    static JsonNode overlay(List<JsonNode> layers) {
+        // the most specific layer with a value replaces everything below it, unless both are objects
+        int last = layers.size() - 1;
+        JsonNode nullValue = null;
+        while (last >= 0 && (layers.get(last) == null || layers.get(last).isNull())) {
+            if (layers.get(last) != null) {
+                nullValue = layers.get(last);
+            }
+            last--;
+        }
+        if (last < 0) {
+            return nullValue;
+        }
+        if (!layers.get(last).isObject()) {
+            return layers.get(last);
+        }
+
+        // run of objects merged together, back to the first value which is not an object
+        int first = last;
+        for (int i = last - 1; i >= 0; i--) {
+            final JsonNode layer = layers.get(i);
+            if (layer == null || layer.isNull()) {
+                continue;
+            }
+            if (!layer.isObject()) {
+                break;
+            }
+            first = i;
+        }
+
+        final List<JsonNode> objects = new ArrayList<>(last - first + 1);
+        for (int i = first; i <= last; i++) {
+            final JsonNode layer = layers.get(i);
+            // emptiness is checked without materializing nested overlays
+            if (layer != null && !layer.isEmpty()) {
+                objects.add(layer);
+            }
+        }
+
+        if (objects.isEmpty()) {
+            return layers.get(last);
+        } else if (objects.size() == 1) {
+            return objects.get(0);
+        }
+        return new OverlayNode(new Layers(objects));
+    }
+
+    /**
+     * @param node A Json value, possibly an overlay
+     * @return The same value where every overlay, nested ones included, is replaced by a plain object of its merged
+     * fields (the values which are not overlays are shared, not copied)
+     */
+    static JsonNode materialize(JsonNode node) {
+        if (!(node instanceof OverlayNode)) {
+            return node;
+        }
+
+        final ObjectNode result = new ObjectNode(JsonNodeFactory.instance);
+        for (final Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+            final Map.Entry<String, JsonNode> field = fields.next();
+            result.set(field.getKey(), materialize(field.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * @return A modifiable (merged) copy of this node
+     */
+    @Override
+    public ObjectNode deepCopy() {
+        return super.deepCopy();
+    }
+
+    /**
+     * @return True once the merged fields were materialized
+     */
+    boolean isMaterialized() {
+        return layers.materialized != null;
+    }
+
+    /**
+     * @return The estimated size retained by this node when created, computed once without walking the layers
+     */
+    long estimateSize() {
+        return size;
+    }
+
+    /**
+     * Children of an overlay: resolves single fields lazily and materializes on anything else.
+     */
+    private static final class Layers extends AbstractMap<String, JsonNode> {
+
+        private static final JsonNode MISSING = JsonNodeFactory.instance.missingNode();
+
+        private final List<JsonNode> objects;
+
+        // fields resolved so far, so that repeated lookups return the same node
+        private final ConcurrentMap<String, JsonNode> resolved = new ConcurrentHashMap<>();
+
+        private volatile Map<String, JsonNode> materialized;
+
+        Layers(List<JsonNode> objects) {
+            this.objects = objects;
+        }
+
+        @Override
+        public JsonNode get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+
+            final Map<String, JsonNode> children = materialized;
+            if (children != null) {
+                return children.get(key);
+            }
+
+            final JsonNode value = resolved.computeIfAbsent((String) key, this::resolve);
+            return value == MISSING ? null : value;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return materialize().size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            final Map<String, JsonNode> children = materialized;
+            if (children != null) {
+                return children.isEmpty();
+            }
+
+            // the fields of the layers are the fields of the overlay
+            for (final JsonNode object : objects) {
+                if (!object.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Set<Entry<String, JsonNode>> entrySet() {
+            return materialize().entrySet();
+        }
+
+        private JsonNode resolve(String field) {
+            final List<JsonNode> values = new ArrayList<>(objects.size());
+            for (final JsonNode object : objects) {
+                values.add(object.get(field));
+            }
+
+            final JsonNode value = overlay(values);
+            return value == null ? MISSING : value;
+        }
+
+        private Map<String, JsonNode> materialize() {
+            Map<String, JsonNode> children = materialized;
+            if (children == null) {
+                synchronized (this) {
+                    children = materialized;
+                    if (children == null) {
+                        // same field order as merging: first layer fields, then new fields as they appear
+                        final Map<String, JsonNode> result = new LinkedHashMap<>();
+                        for (final JsonNode object : objects) {
+                            for (final Iterator<String> fields = object.fieldNames(); fields.hasNext(); ) {
+                                final String field = fields.next();
+                                if (!result.containsKey(field)) {
+                                    result.put(field, get(field));
+                                }
+                            }
+                        }
+                        children = Collections.unmodifiableMap(result);
+                        materialized = children;
+                        resolved.clear();
+                    }
+                }
+            }
+            return children;
+        }
+    }
+}
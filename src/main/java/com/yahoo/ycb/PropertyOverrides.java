@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * An immutable snapshot of the System properties that override configuration values, already parsed to Json.
+ * <p>
+ * Every property is considered, as any lookup path may be overridden (including paths the bundles do not define).
+ * Property values are parsed as YAML, and properties that fail to parse are ignored.
+ */
+class PropertyOverrides {
+
+    private final ImmutableMap<String, JsonNode> values;
+    private final long timestamp;
+
+    private PropertyOverrides(ImmutableMap<String, JsonNode> values, long timestamp) {
+        this.values = values;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @param mapper The mapper used to parse property values
+     * @return A snapshot of the current System properties
+     */
+    static PropertyOverrides snapshot(ObjectMapper mapper) {
+        final ImmutableMap.Builder<String, JsonNode> values = ImmutableMap.builder();
+        final Properties properties = System.getProperties();
+
+        for (String name : properties.stringPropertyNames()) {
+            final String prop = properties.getProperty(name);
+            if (prop != null) {
+                // parse property to JSON using YAML parsing
+                try {
+                    final JsonNode value = mapper.readTree(prop);
+                    if (value != null) {
+                        values.put(name, value);
+                    }
+                } catch (IOException e) {
+                    // ignore, the value is loaded from config
+                }
+            }
+        }
+
+        return new PropertyOverrides(values.build(), System.nanoTime());
+    }
+
+    /**
+     * @param path The lookup path
+     * @return The overriding value, or null if not overridden
+     */
+    JsonNode get(String path) {
+        return values.get(path);
+    }
+
+    /**
+     * @return The value of {@link System#nanoTime()} when the snapshot was taken
+     */
+    long getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * A Configuration that is reloaded whenever files in the directory of a {@link FileSystemLoader} change.
+ * <p>
+ * The directory is watched by a background (daemon) thread, which loads a new Configuration and publishes
+ * it atomically, so readers never block and never see a partially loaded configuration. Projections hold
+ * the Configuration they were created from, therefore projections created before a reload keep a consistent
+ * view of the configuration.
+ * <p>
+ * If a reload fails (e.g. a file being edited is not valid yet), the current configuration is kept, and the
+ * listener is notified.
+ */
+public class ReloadingConfiguration implements Closeable {
+
+    // wait for the directory to be quiet for this long before reloading (editors usually write files in steps)
+    private static final long QUIET_PERIOD_MILLIS = 100;
+
+    private final FileSystemLoader loader;
+    private final Configuration.Builder builder;
+    private final Listener listener;
+    private final WatchService watchService;
+    private final Thread watcher;
+
+    private volatile Configuration configuration;
+
+    /**
+     * Listener of reload events. Methods are called from the watching thread.
+     */
+    public interface Listener {
+        /**
+         * @param configuration The configuration that was just published
+         */
+        default void onReload(Configuration configuration) {
+        }
+
+        /**
+         * @param e The error that prevented the configuration to be reloaded
+         */
+        default void onReloadFailure(Exception e) {
+        }
+    }
+
+    /**
+     * @param loader The loader, whose directory will be watched
+     * @throws IOException Throws from loader methods, or if the directory cannot be watched
+     */
+    public ReloadingConfiguration(FileSystemLoader loader) throws IOException {
+        this(loader, Configuration.builder(), new Listener() {
+        });
+    }
+
+    /**
+     * @param loader   The loader, whose directory will be watched
+     * @param builder  Specifies how the configuration is loaded (on start and on every reload)
+     * @param listener Listener of reload events
+     * @throws IOException Throws from loader methods, or if the directory cannot be watched
+     */
+    public ReloadingConfiguration(FileSystemLoader loader, Configuration.Builder builder, Listener listener) throws IOException {
+        this.loader = loader;
+        this.builder = builder;
+        this.listener = listener;
+        this.configuration = builder.load(loader);
+
+        final Path directory = loader.getDirectoryPath().toPath();
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+
+        watcher = new Thread(this::watch, "ycb-reload-" + directory.getFileName());
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * @return The current configuration
+     */
+    public Configuration get() {
+        return configuration;
+    }
+
+    /**
+     * Load the configuration again, and publish it if successful.
+     *
+     * @throws IOException Throws from loader methods
+     */
+    public synchronized void reload() throws IOException {
+        configuration = builder.load(loader);
+        listener.onReload(configuration);
+    }
+
+    /**
+     * Get the projection of the current configuration given a context.
+     *
+     * @param context A map from dimension name to value, omitted dimensions are implicitly "any"
+     * @param allowSystemPropertyOverride if true, properties in System Properties take priority if defined
+     * @return The projected configuration from the context
+     */
+    public Configuration.Projection project(Map<String, String> context, boolean allowSystemPropertyOverride) {
+        return configuration.project(context, allowSystemPropertyOverride);
+    }
+
+    /**
+     * Get the projection of the current configuration given a context. Does not allow System properties override.
+     *
+     * @param context A map from dimension name to value, omitted dimensions are implicitly "any"
+     * @return The projected configuration from the context
+     */
+    public Configuration.Projection project(Map<String, String> context) {
+        return configuration.project(context);
+    }
+
+    /**
+     * Get the projection of the current configuration given a context key.
+     *
+     * @param key A context key
+     * @return The projected configuration from the context
+     */
+    public Configuration.Projection project(ContextKey key) {
+        return configuration.project(key);
+    }
+
+    /**
+     * Stop watching the directory. The current configuration remains usable.
+     *
+     * @throws IOException If the watch service fails to close
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        watcher.interrupt();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                drain(watchService.take());
+
+                // coalesce the burst of events
+                WatchKey key;
+                while ((key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    drain(key);
+                }
+
+                try {
+                    reload();
+                } catch (IOException | RuntimeException e) {
+                    listener.onReloadFailure(e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private static void drain(WatchKey key) {
+        key.pollEvents();
+        key.reset();
+    }
+}
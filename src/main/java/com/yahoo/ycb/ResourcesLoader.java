@@ -6,18 +6,18 @@
 package com.yahoo.ycb;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 
 import java.io.*;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 public class ResourcesLoader implements Loader {
 
     private final String dimensions;
     private final String[] configResources;
 
+    private volatile Map<String, Long> dimensionsTimings = Collections.emptyMap();
+    private volatile Map<String, Long> bundlesTimings = Collections.emptyMap();
+
     public ResourcesLoader(String dimensionsResource, String... configResources) {
         this.dimensions = dimensionsResource;
         this.configResources = configResources;
@@ -25,33 +25,43 @@ public class ResourcesLoader implements Loader {
 
     @Override
     public List<Dimension> getDimensions() throws IOException {
-        final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        final Map<String, Long> timings = new LinkedHashMap<>();
 
-        final JsonNode node = mapper.readTree(getClassLoader().getResourceAsStream(dimensions));
+        final JsonNode node = LoadUtils.parseAll(getConfigSources(dimensions), timings);
 
+        dimensionsTimings = timings;
         return LoadUtils.parseDimensions(node);
     }
 
     @Override
     public Set<Bundle> getBundles() throws IOException {
-        final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+        final Map<String, Long> timings = new LinkedHashMap<>();
 
-        final JsonNode node = mapper.readTree(getConfigInputStream());
+        final JsonNode node = LoadUtils.parseAll(getConfigSources(configResources), timings);
 
+        bundlesTimings = timings;
         return LoadUtils.parseBundles(node);
     }
 
-    private InputStream getConfigInputStream() {
-        InputStream result = new ByteArrayInputStream(new byte[]{});
-        ClassLoader loader = getClassLoader();
-
-        for (String configResource : configResources) {
-            result = new SequenceInputStream(
-                    result,
-                    new SequenceInputStream(
-                            // make sure we have a line break between files
-                            new ByteArrayInputStream("\n".getBytes()),
-                            loader.getResourceAsStream((configResource))));
+    @Override
+    public Map<String, Long> getParseTimings() {
+        final Map<String, Long> result = new LinkedHashMap<>(dimensionsTimings);
+        result.putAll(bundlesTimings);
+        return result;
+    }
+
+    private Map<String, LoadUtils.Source> getConfigSources(String... resources) {
+        final Map<String, LoadUtils.Source> result = new LinkedHashMap<>();
+        final ClassLoader loader = getClassLoader();
+
+        for (String resource : resources) {
+            result.put(resource, () -> {
+                final InputStream input = loader.getResourceAsStream(resource);
+                if (input == null) {
+                    throw new FileNotFoundException("Resource not found: " + resource);
+                }
+                return input;
+            });
         }
         return result;
     }
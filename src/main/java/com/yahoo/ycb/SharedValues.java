@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Merged values shared by all the contexts of a Configuration, keyed by the leaves contributing to the value (in
+ * merge order) and the path: contexts matching the same leaves project the same value, so it is merged once, and
+ * the cached values of these contexts reference a single copy. Bounded by an estimation of the memory retained by
+ * the values (see {@link CacheSpec#getMaximumSharedBytes()}).
+ * <p>
+ * Values are folded one level of the tree at a time (see {@link LookupTree#projectAll}): each leaf has a single
+ * position in the tree, so the same leaves, in the same order, always fold the same way.
+ * <p>
+ * Leaves are never modified once the tree is published (updates copy them), so values never need to be invalidated:
+ * the values of replaced leaves are not looked up anymore, and are eventually evicted.
+ */
+class SharedValues {
+
+    // estimation of the key (with a few leaf ids) and map node objects
+    private static final int ENTRY_SIZE = 96;
+
+    private final ConcurrentLinkedHashMap<Fingerprint, Entry> map;
+    private final long capacity;
+    private final YcbMetrics metrics;
+
+    SharedValues(long capacity, YcbMetrics metrics) {
+        this.capacity = capacity;
+        this.metrics = metrics;
+        this.map = new ConcurrentLinkedHashMap.Builder<Fingerprint, Entry>()
+                .maximumWeightedCapacity(capacity)
+                .weigher((Fingerprint key, Entry entry) -> entry.weight)
+                .build();
+    }
+
+    /**
+     * @param path   The projected path
+     * @param layers The values of the path, as appended by {@link LookupTree#projectAll}
+     * @param leaves The leaves contributing to the values, in merge order
+     * @return The merged value, shared with the other contexts with the same contributing leaves (unless the value
+     * is not merged, or exceeds the capacity)
+     */
+    Entry merge(ConfigPath path, List<JsonNode> layers, List<LookupTree> leaves) {
+        if (leaves.size() <= 1) {
+            // nothing to merge, the value is already the one of the leaf
+            return unshared(merge(layers));
+        }
+
+        final long[] ids = new long[leaves.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = leaves.get(i).getId();
+        }
+
+        final Fingerprint key = new Fingerprint(ids, path);
+        final Entry shared = map.get(key);
+        if (shared != null) {
+            metrics.valueShared();
+            return shared;
+        }
+
+        final JsonNode value = merge(layers);
+        final long weight = ENTRY_SIZE + 8L * ids.length + JsonSizeEstimator.estimate(value);
+        if (weight > capacity) {
+            return unshared(value);
+        }
+
+        final Entry entry = new Entry(value, (int) Math.min(weight, Integer.MAX_VALUE));
+        final Entry previous = map.putIfAbsent(key, entry);
+        return previous == null ? entry : previous;
+    }
+
+    /**
+     * @param value A value which is not held by the shared values
+     * @return The entry of the value
+     */
+    static Entry unshared(JsonNode value) {
+        return new Entry(value, 0);
+    }
+
+    private static JsonNode merge(List<JsonNode> layers) {
+        final JsonNode value = OverlayNode.overlay(layers);
+        return value == null ? NullNode.getInstance() : value;
+    }
+
+    /**
+     * @return The number of shared values
+     */
+    int size() {
+        return map.size();
+    }
+
+    private static final class Fingerprint {
+        private final long[] leaves;
+        private final ConfigPath path;
+        private final int hash;
+
+        private Fingerprint(long[] leaves, ConfigPath path) {
+            this.leaves = leaves;
+            this.path = path;
+            this.hash = 31 * Arrays.hashCode(leaves) + path.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            final Fingerprint other = (Fingerprint) o;
+            return hash == other.hash && path == other.path && Arrays.equals(leaves, other.leaves);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A merged value, along with its weight when it is held by the shared values.
+     */
+    static final class Entry {
+        private final JsonNode value;
+        // 0 if the value is not held
+        private final int weight;
+
+        private Entry(JsonNode value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+
+        JsonNode getValue() {
+            return value;
+        }
+
+        /**
+         * @return True if the value is held by the shared values, whose budget accounts for it
+         */
+        boolean isShared() {
+            return weight > 0;
+        }
+    }
+}
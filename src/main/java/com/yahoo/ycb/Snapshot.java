@@ -0,0 +1,411 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a built configuration: dimensions, fixed context and lookup tree, including the merged and
+ * bundle deltas of every leaf. Loading a snapshot skips parsing, sorting and merging entirely.
+ * <p>
+ * Layout (integers are big endian, strings are length prefixed UTF-8):
+ * <pre>
+ * "YCBS" version
+ * HEADER  fixed context count (name value)*, dimension count (name size (value parent)*)*
+ * STRUCT  length, tree nodes in depth first order:
+ *           INNER edge count (ordinal node)*
+ *           LEAF  merged delta ref, bundle count ((dimension ordinal)* count, delta ref)*
+ * DATA    length, the deltas encoded with {@link BinaryJson} (refs are offsets in this section, -1 for none)
+ * CRC32   of all the previous bytes
+ * </pre>
+ * Dimension values are listed by ordinal (from 1, the root "*" is implicit) along with the ordinal of their parent.
+ * Deltas shared by several leaves or bundles are only written once. Sections are limited to 2 GB.
+ * <p>
+ * Snapshots can also be memory mapped (see {@link MappedLeafNode}): leaves then keep their deltas in the
+ * mapped data section, so the page cache holds the only copy, shared by every process mapping the file.
+ */
+final class Snapshot {
+
+    static final byte[] MAGIC = {'Y', 'C', 'B', 'S'};
+    static final int VERSION = 1;
+
+    static final byte INNER = 1;
+    static final byte LEAF = 2;
+
+    private static final int NO_DELTA = -1;
+
+    private final List<Dimension> dimensions;
+    private final Map<String, String> fixedContext;
+    private final LookupTree tree;
+
+    // the bundles of decoded leaves, or the mapped leaves to decode them from on demand
+    private Set<Bundle> bundles;
+    private final List<MappedLeafNode> mappedLeaves;
+
+    private Snapshot(List<Dimension> dimensions, Map<String, String> fixedContext, LookupTree tree, Set<Bundle> bundles,
+                     List<MappedLeafNode> mappedLeaves) {
+        this.dimensions = dimensions;
+        this.fixedContext = fixedContext;
+        this.tree = tree;
+        this.bundles = bundles;
+        this.mappedLeaves = mappedLeaves;
+    }
+
+    List<Dimension> getDimensions() {
+        return dimensions;
+    }
+
+    Map<String, String> getFixedContext() {
+        return fixedContext;
+    }
+
+    LookupTree getTree() {
+        return tree;
+    }
+
+    synchronized Set<Bundle> getBundles() {
+        if (bundles == null) {
+            final Set<Bundle> result = new HashSet<>();
+            mappedLeaves.forEach(leaf -> result.addAll(leaf.getBundles()));
+            bundles = Collections.unmodifiableSet(result);
+        }
+        return bundles;
+    }
+
+    /**
+     * @param output       Where to write the snapshot (not closed)
+     * @param dimensions   The list of dimensions
+     * @param fixedContext The fixed context of the tree
+     * @param tree         The lookup tree
+     * @throws IOException Thrown by the output stream
+     */
+    static void write(OutputStream output, List<Dimension> dimensions, Map<String, String> fixedContext,
+                      LookupTree tree) throws IOException {
+        final BinaryJson.Output header = new BinaryJson.Output();
+        for (byte b : MAGIC) {
+            header.writeByte(b);
+        }
+        header.writeInt(VERSION);
+
+        header.writeInt(fixedContext.size());
+        for (Map.Entry<String, String> entry : new TreeMap<>(fixedContext).entrySet()) {
+            writeString(header, entry.getKey());
+            writeString(header, entry.getValue());
+        }
+
+        header.writeInt(dimensions.size());
+        for (Dimension dimension : dimensions) {
+            writeString(header, dimension.getName());
+            header.writeInt(dimension.size());
+            for (int ordinal = 1; ordinal < dimension.size(); ordinal++) {
+                final int[] ancestries = dimension.getAncestries(ordinal);
+                writeString(header, dimension.getValue(ordinal));
+                header.writeInt(ancestries[ancestries.length - 2]);
+            }
+        }
+
+        final Writer writer = new Writer(dimensions);
+        tree.writeSnapshot(writer);
+
+        final CRC32 crc = new CRC32();
+        write(output, crc, header.toByteArray());
+        writeSection(output, crc, writer.struct.toByteArray());
+        writeSection(output, crc, writer.data.toByteArray());
+
+        final BinaryJson.Output trailer = new BinaryJson.Output();
+        trailer.writeInt((int) crc.getValue());
+        output.write(trailer.toByteArray());
+        output.flush();
+    }
+
+    private static void writeSection(OutputStream output, CRC32 crc, byte[] section) throws IOException {
+        final BinaryJson.Output length = new BinaryJson.Output();
+        length.writeInt(section.length);
+        write(output, crc, length.toByteArray());
+        write(output, crc, section);
+    }
+
+    private static void write(OutputStream output, CRC32 crc, byte[] bytes) throws IOException {
+        crc.update(bytes);
+        output.write(bytes);
+    }
+
+    private static void writeString(BinaryJson.Output output, String value) {
+        output.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Receives the nodes of a tree, in depth first order.
+     */
+    static final class Writer {
+        private final Map<String, Integer> dimensionIndexes = new HashMap<>();
+        private final List<Dimension> dimensions;
+        private final BinaryJson.Output struct = new BinaryJson.Output();
+        private final BinaryJson.Output data = new BinaryJson.Output();
+
+        // deltas already written, by identity
+        private final Map<JsonNode, Integer> refs = new IdentityHashMap<>();
+
+        private Writer(List<Dimension> dimensions) {
+            this.dimensions = dimensions;
+            for (int i = 0; i < dimensions.size(); i++) {
+                dimensionIndexes.put(dimensions.get(i).getName(), i);
+            }
+        }
+
+        void writeInner(int edgeCount) {
+            struct.writeByte(INNER);
+            struct.writeInt(edgeCount);
+        }
+
+        void writeEdge(int ordinal) {
+            struct.writeInt(ordinal);
+        }
+
+        void writeLeaf(JsonNode delta, List<Bundle> bundles) {
+            struct.writeByte(LEAF);
+            struct.writeInt(ref(delta));
+            struct.writeInt(bundles.size());
+
+            for (Bundle bundle : bundles) {
+                struct.writeInt(bundle.getContext().size());
+                for (Map.Entry<String, String> entry : bundle.getContext().entrySet()) {
+                    final int index = dimensionIndexes.get(entry.getKey());
+                    struct.writeInt(index);
+                    struct.writeInt(dimensions.get(index).getOrdinal(entry.getValue()));
+                }
+                struct.writeInt(ref(bundle.getDelta()));
+            }
+        }
+
+        private int ref(JsonNode delta) {
+            if (delta == null) {
+                return NO_DELTA;
+            }
+
+            Integer ref = refs.get(delta);
+            if (ref == null) {
+                ref = data.size();
+                BinaryJson.encode(delta, data);
+                refs.put(delta, ref);
+            }
+            return ref;
+        }
+    }
+
+    /**
+     * @param buffer The snapshot, from position 0 to its limit (only read with absolute gets or on duplicates)
+     * @param mapped If true, leaves keep their deltas encoded in the buffer, and only decode the projected values
+     * @return The decoded snapshot
+     * @throws IOException If the buffer is not a valid snapshot
+     */
+    static Snapshot read(ByteBuffer buffer, boolean mapped) throws IOException {
+        final ByteBuffer input = buffer.duplicate();
+        input.position(0);
+
+        if (input.remaining() < MAGIC.length + 8) {
+            throw new IOException("Not a configuration snapshot");
+        }
+        for (byte b : MAGIC) {
+            if (input.get() != b) {
+                throw new IOException("Not a configuration snapshot");
+            }
+        }
+        final int version = input.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version: " + version);
+        }
+
+        final int end = input.limit() - 4;
+        final ByteBuffer checked = buffer.duplicate();
+        checked.position(0);
+        checked.limit(end);
+        final CRC32 crc = new CRC32();
+        crc.update(checked);
+        if ((int) crc.getValue() != buffer.getInt(end)) {
+            throw new IOException("Corrupted snapshot: checksum mismatch");
+        }
+
+        try {
+            final Map<String, String> fixedContext = new HashMap<>();
+            final int fixedCount = input.getInt();
+            for (int i = 0; i < fixedCount; i++) {
+                fixedContext.put(readString(input), readString(input));
+            }
+
+            final List<Dimension> dimensions = new ArrayList<>();
+            final int dimensionCount = input.getInt();
+            for (int i = 0; i < dimensionCount; i++) {
+                dimensions.add(readDimension(input));
+            }
+
+            final int structLength = input.getInt();
+            final ByteBuffer struct = slice(input, structLength);
+            final int dataLength = input.getInt();
+            final ByteBuffer data = slice(input, dataLength);
+
+            final Reader reader = new Reader(dimensions, LookupTree.treeDimensions(dimensions, fixedContext), struct, data, mapped);
+            final LookupTree tree = reader.readNode(0);
+
+            return new Snapshot(Collections.unmodifiableList(dimensions), Collections.unmodifiableMap(fixedContext),
+                    tree, mapped ? null : Collections.unmodifiableSet(reader.bundles), reader.mappedLeaves);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted snapshot", e);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer input, int length) {
+        final ByteBuffer result = input.duplicate();
+        result.limit(input.position() + length);
+        input.position(input.position() + length);
+        return result.slice();
+    }
+
+    private static Dimension readDimension(ByteBuffer input) throws IOException {
+        final String name = readString(input);
+        final int size = input.getInt();
+
+        final String[] values = new String[size];
+        final List<Set<Dimension.DimensionValue>> children = new ArrayList<>(size);
+        final Dimension.DimensionValue[] dimensionValues = new Dimension.DimensionValue[size];
+
+        values[0] = LookupTree.ANY_VALUE;
+        children.add(new HashSet<>());
+        dimensionValues[0] = new Dimension.DimensionValue(LookupTree.ANY_VALUE, children.get(0));
+
+        for (int ordinal = 1; ordinal < size; ordinal++) {
+            values[ordinal] = readString(input);
+            final int parent = input.getInt();
+
+            children.add(new HashSet<>());
+            dimensionValues[ordinal] = new Dimension.DimensionValue(values[ordinal], children.get(ordinal));
+            children.get(parent).add(dimensionValues[ordinal]);
+        }
+
+        final Dimension dimension = new Dimension(name, dimensionValues[0]);
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            if (!values[ordinal].equals(dimension.getValue(ordinal))) {
+                throw new IOException("Corrupted snapshot: invalid values of dimension " + name);
+            }
+        }
+        return dimension;
+    }
+
+    private static String readString(ByteBuffer input) {
+        final byte[] bytes = new byte[input.getInt()];
+        input.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the bundles of a leaf.
+     *
+     * @param struct     The structure section
+     * @param position   The position of the bundle count
+     * @param dimensions The list of dimensions
+     * @param deltas     Decodes a delta from its ref
+     * @param result     Receives the bundles, or null to skip them
+     * @return The position after the bundles
+     */
+    static int readBundles(ByteBuffer struct, int position, List<Dimension> dimensions, IntFunction<JsonNode> deltas,
+                           List<Bundle> result) {
+        final int bundleCount = struct.getInt(position);
+        int current = position + 4;
+
+        for (int i = 0; i < bundleCount; i++) {
+            final int contextSize = struct.getInt(current);
+            current += 4;
+
+            if (result == null) {
+                current += 8 * contextSize + 4;
+                continue;
+            }
+
+            final Map<String, String> context = new HashMap<>();
+            for (int j = 0; j < contextSize; j++, current += 8) {
+                final Dimension dimension = dimensions.get(struct.getInt(current));
+                context.put(dimension.getName(), dimension.getValue(struct.getInt(current + 4)));
+            }
+            result.add(new Bundle(context, deltas.apply(struct.getInt(current))));
+            current += 4;
+        }
+        return current;
+    }
+
+    /**
+     * @param data The data section
+     * @param ref  The offset of the delta in the data section
+     * @return The decoded delta, or null for no delta
+     */
+    static JsonNode readDelta(ByteBuffer data, int ref) {
+        return ref == NO_DELTA ? null : BinaryJson.decode(data, ref);
+    }
+
+    /**
+     * Rebuilds the tree nodes, decoding every delta once (or keeping leaves mapped).
+     */
+    private static final class Reader {
+        private final List<Dimension> dimensions;
+        private final List<Dimension> treeDimensions;
+        private final ByteBuffer struct;
+        private final ByteBuffer data;
+        private final boolean mapped;
+        private final Map<Integer, JsonNode> deltas = new HashMap<>();
+        private final Set<Bundle> bundles = new HashSet<>();
+        private final List<MappedLeafNode> mappedLeaves = new ArrayList<>();
+
+        Reader(List<Dimension> dimensions, List<Dimension> treeDimensions, ByteBuffer struct, ByteBuffer data,
+               boolean mapped) {
+            this.dimensions = dimensions;
+            this.treeDimensions = treeDimensions;
+            this.struct = struct;
+            this.data = data;
+            this.mapped = mapped;
+        }
+
+        LookupTree readNode(int level) throws IOException {
+            final byte tag = struct.get();
+
+            if (tag == INNER && level < treeDimensions.size()) {
+                final InnerNode node = new InnerNode(treeDimensions.get(level));
+                final int edgeCount = struct.getInt();
+                for (int i = 0; i < edgeCount; i++) {
+                    final int ordinal = struct.getInt();
+                    node.setEdge(ordinal, readNode(level + 1));
+                }
+                return node;
+            } else if (tag == LEAF && level == treeDimensions.size()) {
+                final int ref = struct.getInt();
+                final int bundlesPosition = struct.position();
+
+                if (mapped) {
+                    struct.position(readBundles(struct, bundlesPosition, dimensions, null, null));
+                    final MappedLeafNode leaf = new MappedLeafNode(dimensions, struct, bundlesPosition, data, ref);
+                    mappedLeaves.add(leaf);
+                    return leaf;
+                }
+
+                final List<Bundle> leafBundles = new ArrayList<>();
+                struct.position(readBundles(struct, bundlesPosition, dimensions, this::delta, leafBundles));
+                bundles.addAll(leafBundles);
+                return new LeafNode(delta(ref), leafBundles);
+            }
+            throw new IOException("Corrupted snapshot: unexpected node " + tag + " at level " + level);
+        }
+
+        private JsonNode delta(int ref) {
+            return ref == NO_DELTA ? null : deltas.computeIfAbsent(ref, position -> readDelta(data, position));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implementation of a Loader from a snapshot written by {@link Configuration#writeSnapshot(java.io.OutputStream)}.
+ * <p>
+ * The snapshot is read and verified when the loader is created. Loading a configuration with the fixed context of
+ * the snapshot (see {@link Configuration#loadSnapshot(Path)}) reuses the snapshot lookup tree as is, skipping
+ * parsing, sorting and merging. Bundles only include the bundles compatible with the fixed context of the snapshot.
+ */
+public class SnapshotLoader implements Loader {
+
+    private final Snapshot snapshot;
+
+    /**
+     * @param path The snapshot file
+     * @throws IOException If the file can't be read, or is not a valid snapshot
+     */
+    public SnapshotLoader(Path path) throws IOException {
+        this(path, false);
+    }
+
+    /**
+     * A mapped snapshot keeps the deltas off heap: they stay encoded in the file, mapped in memory, and only the
+     * projected values are decoded. Several processes mapping the same file share a single copy in the page cache.
+     * The file must not be modified while it is mapped, and mapped snapshots are limited to 2 GB.
+     *
+     * @param path   The snapshot file
+     * @param mapped If true, map the file in memory instead of decoding all deltas on the heap
+     * @throws IOException If the file can't be read, or is not a valid snapshot
+     */
+    public SnapshotLoader(Path path, boolean mapped) throws IOException {
+        this.snapshot = Snapshot.read(mapped ? map(path) : ByteBuffer.wrap(Files.readAllBytes(path)), mapped);
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshots larger than 2 GB can't be mapped: " + path);
+            }
+            // the mapping stays valid once the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    @Override
+    public List<Dimension> getDimensions() {
+        return snapshot.getDimensions();
+    }
+
+    /**
+     * Decodes the bundles of a mapped snapshot on the first call.
+     */
+    @Override
+    public Set<Bundle> getBundles() {
+        return snapshot.getBundles();
+    }
+
+    /**
+     * @return The fixed context the snapshot was built with
+     */
+    public Map<String, String> getFixedContext() {
+        return snapshot.getFixedContext();
+    }
+
+    LookupTree getTree() {
+        return snapshot.getTree();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Options of {@link Configuration#validate(ValidationOptions)}.
+ * <p>
+ * The deltas of the configuration are validated in parallel, on a fork/join pool. Errors are always reported
+ * in the same order as a complete validation; when validation stops early (fail fast or maximum number of
+ * errors), which errors are found first may vary between runs.
+ * <p>
+ * Instances are immutable, and created through {@link #builder()}.
+ */
+public final class ValidationOptions {
+
+    private static final ValidationOptions DEFAULTS = builder().build();
+
+    /**
+     * Receives the progress of a validation. Notified concurrently from the validating threads.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * @param validated The number of deltas validated so far
+         * @param total     The number of deltas to validate
+         */
+        void progress(int validated, int total);
+    }
+
+    private final int maxErrors;
+    private final ForkJoinPool pool;
+    private final ProgressListener progressListener;
+
+    private ValidationOptions(Builder builder) {
+        this.maxErrors = builder.maxErrors;
+        this.pool = builder.pool;
+        this.progressListener = builder.progressListener;
+    }
+
+    /**
+     * @return The default options: report every error, validating on the common fork/join pool
+     */
+    public static ValidationOptions defaults() {
+        return DEFAULTS;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The number of errors after which validation stops
+     */
+    public int getMaxErrors() {
+        return maxErrors;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * @return The progress listener, or null
+     */
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    public static final class Builder {
+        private int maxErrors = Integer.MAX_VALUE;
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+        private ProgressListener progressListener;
+
+        private Builder() {
+        }
+
+        /**
+         * Stop validating as soon as an error is found. Same as {@code maxErrors(1)}.
+         *
+         * @return this builder
+         */
+        public Builder failFast() {
+            return maxErrors(1);
+        }
+
+        /**
+         * @param maxErrors The number of errors after which validation stops
+         * @return this builder
+         */
+        public Builder maxErrors(int maxErrors) {
+            if (maxErrors < 1) {
+                throw new IllegalArgumentException("Maximum errors must be positive");
+            }
+            this.maxErrors = maxErrors;
+            return this;
+        }
+
+        /**
+         * @param pool The fork/join pool validating the deltas
+         * @return this builder
+         */
+        public Builder pool(ForkJoinPool pool) {
+            if (pool == null) {
+                throw new IllegalArgumentException("Pool must not be null");
+            }
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * @param progressListener Notified as deltas are validated
+         * @return this builder
+         */
+        public Builder progressListener(ProgressListener progressListener) {
+            this.progressListener = progressListener;
+            return this;
+        }
+
+        public ValidationOptions build() {
+            return new ValidationOptions(this);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * Cache of projected values, shared by all projections of a Configuration, and bounded by an estimation of the
+ * memory retained by the values (see {@link CacheSpec}).
+ */
+class ValueCache {
+
+    // estimation of the key, entry and map node objects (paths are interned, hence not accounted)
+    private static final int ENTRY_SIZE = 96;
+
+    // estimation of the average entry size, used to size the frequency sketch
+    private static final int AVERAGE_ENTRY_SIZE = 512;
+
+    private final ConcurrentLinkedHashMap<Key, Entry> map;
+    private final long capacity;
+    private final long expireAfterAccessNanos;
+
+    // access frequencies, or null if the eviction policy is not frequency aware
+    private final FrequencySketch sketch;
+
+    private final YcbMetrics metrics;
+
+    ValueCache(CacheSpec spec) {
+        this(spec, YcbMetrics.NOOP);
+    }
+
+    ValueCache(CacheSpec spec, YcbMetrics metrics) {
+        this.metrics = metrics;
+        capacity = spec.getMaximumBytes();
+        expireAfterAccessNanos = spec.getExpireAfterAccessNanos();
+        sketch = spec.getEvictionPolicy() == CacheSpec.EvictionPolicy.FREQUENCY ?
+                new FrequencySketch(capacity / AVERAGE_ENTRY_SIZE) : null;
+
+        final ConcurrentLinkedHashMap.Builder<Key, Entry> builder = new ConcurrentLinkedHashMap.Builder<Key, Entry>()
+                .maximumWeightedCapacity(capacity)
+                .weigher((Key key, Entry entry) -> entry.weight);
+        if (metrics != YcbMetrics.NOOP) {
+            // the listener queues notifications, only pay for it when metrics are set
+            builder.listener((key, entry) -> metrics.cacheEviction());
+        }
+        map = builder.build();
+    }
+
+    /**
+     * @param context The projection context
+     * @param path    The projected path
+     * @return The cached value, or null if not cached
+     */
+    JsonNode get(ContextKey context, ConfigPath path) {
+        final Entry entry = getEntry(context, path);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * @param context The projection context
+     * @param path    The projected path
+     * @return The cached entry, or null if not cached
+     */
+    Entry getEntry(ContextKey context, ConfigPath path) {
+        final Key key = new Key(context, path);
+
+        if (sketch != null) {
+            sketch.increment(key.hash);
+        }
+
+        final Entry entry = map.get(key);
+        if (entry == null) {
+            metrics.cacheMiss();
+            return null;
+        }
+
+        if (expireAfterAccessNanos > 0) {
+            final long now = System.nanoTime();
+            if (now - entry.accessTime >= expireAfterAccessNanos) {
+                if (map.remove(key, entry)) {
+                    metrics.cacheEviction();
+                }
+                metrics.cacheMiss();
+                return null;
+            }
+            entry.accessTime = now;
+        }
+
+        metrics.cacheHit();
+        return entry;
+    }
+
+    /**
+     * @param context The projection context
+     * @param path    The projected path
+     * @param value   The projected value
+     * @return The entry of the value (which may not have been admitted in the cache)
+     */
+    Entry put(ContextKey context, ConfigPath path, JsonNode value) {
+        return put(context, path, value, false);
+    }
+
+    /**
+     * @param context The projection context
+     * @param path    The projected path
+     * @param value   The projected value
+     * @param shared  True if the value is held by the {@link SharedValues}, which account for it: the entry is then
+     *                only weighted by its reference to the value
+     * @return The entry of the value (which may not have been admitted in the cache)
+     */
+    Entry put(ContextKey context, ConfigPath path, JsonNode value, boolean shared) {
+        final long weight = ENTRY_SIZE + (shared ? 0 : JsonSizeEstimator.estimate(value));
+        final Entry entry = new Entry(value, (int) Math.min(weight, Integer.MAX_VALUE),
+                expireAfterAccessNanos > 0 ? System.nanoTime() : 0);
+
+        if (weight > capacity) {
+            return entry;
+        }
+
+        final Key key = new Key(context, path);
+
+        if (sketch != null && map.weightedSize() + weight > capacity) {
+            // admit the new value only if it is more popular than the value it would evict
+            for (Key victim : map.ascendingKeySetWithLimit(1)) {
+                if (sketch.frequency(key.hash) <= sketch.frequency(victim.hash)) {
+                    return entry;
+                }
+            }
+        }
+
+        map.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * @param context The projection context
+     * @param path    The projected path
+     */
+    void invalidate(ContextKey context, ConfigPath path) {
+        map.remove(new Key(context, path));
+    }
+
+    /**
+     * @param contexts Predicate selecting the contexts whose values must be invalidated
+     */
+    void invalidate(Predicate<ContextKey> contexts) {
+        map.keySet().removeIf(key -> contexts.test(key.context));
+    }
+
+    /**
+     * @return The number of cached values
+     */
+    int size() {
+        return map.size();
+    }
+
+    /**
+     * @return The estimated size, in bytes, of the cached values
+     */
+    long weightedSize() {
+        return map.weightedSize();
+    }
+
+    private static final class Key {
+        private final ContextKey context;
+        private final ConfigPath path;
+        private final int hash;
+
+        private Key(ContextKey context, ConfigPath path) {
+            this.context = context;
+            this.path = path;
+            this.hash = 31 * context.hashCode() + path.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return hash == other.hash && path == other.path && context.equals(other.context);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A cached value, along with the objects deserialized from it (which are not accounted in the cache weight).
+     */
+    static final class Entry {
+        private static final Object NULL = new Object();
+
+        private final JsonNode value;
+        private final int weight;
+        private volatile long accessTime;
+
+        // deserialized values by type, created on demand
+        private volatile ConcurrentMap<JavaType, Object> objects;
+
+        private Entry(JsonNode value, int weight, long accessTime) {
+            this.value = value;
+            this.weight = weight;
+            this.accessTime = accessTime;
+        }
+
+        JsonNode getValue() {
+            return value;
+        }
+
+        /**
+         * @param type   The type to deserialize the value to
+         * @param mapper The mapper used to deserialize the value
+         * @param <T>    The deserialized type
+         * @return The deserialized value, shared by all callers asking for the same type
+         * @throws JsonProcessingException If the value cannot be deserialized to the type
+         */
+        @SuppressWarnings("unchecked")
+        <T> T getObject(JavaType type, ObjectMapper mapper) throws JsonProcessingException {
+            ConcurrentMap<JavaType, Object> objects = this.objects;
+            if (objects == null) {
+                synchronized (this) {
+                    objects = this.objects;
+                    if (objects == null) {
+                        objects = new ConcurrentHashMap<>(4);
+                        this.objects = objects;
+                    }
+                }
+            }
+
+            Object object = objects.get(type);
+            if (object == null) {
+                final Object deserialized = mapper.treeToValue(value, type);
+                object = objects.putIfAbsent(type, deserialized == null ? NULL : deserialized);
+                if (object == null) {
+                    object = deserialized == null ? NULL : deserialized;
+                }
+            }
+
+            return object == NULL ? null : (T) object;
+        }
+    }
+}
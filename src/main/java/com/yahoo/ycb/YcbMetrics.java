@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+/**
+ * Receives the metrics of a Configuration: cache hits, misses and evictions, latencies of projections and merges,
+ * and the time spent in each phase of loading. Set with {@link Configuration.Builder#metrics(YcbMetrics)}.
+ * <p>
+ * Every method does nothing by default, and is called concurrently from the projecting threads, so
+ * implementations must be thread safe and cheap. Latencies are only measured when metrics are set.
+ *
+ * @see InMemoryYcbMetrics
+ */
+public interface YcbMetrics {
+
+    /**
+     * Metrics ignoring everything, the default.
+     */
+    YcbMetrics NOOP = new YcbMetrics() {
+    };
+
+    enum LoadPhase {
+        /** Loading the dimensions */
+        DIMENSIONS,
+        /** Loading (parsing) the bundles */
+        BUNDLES,
+        /** Validating and ordering the bundles */
+        SORT,
+        /** Inserting the bundles in the lookup tree */
+        INSERT,
+        /** Merging the deltas of all contexts, for eager materialization */
+        MATERIALIZE
+    }
+
+    /**
+     * A projected value was found in the cache.
+     */
+    default void cacheHit() {
+    }
+
+    /**
+     * A projected value was not found in the cache.
+     */
+    default void cacheMiss() {
+    }
+
+    /**
+     * A projected value was evicted from the cache, or expired.
+     */
+    default void cacheEviction() {
+    }
+
+    /**
+     * A value missing from the cache was already merged for another context with the same contributing leaves, and
+     * was reused instead of being merged again.
+     */
+    default void valueShared() {
+    }
+
+    /**
+     * @param nanos The time spent projecting a value missing from the cache
+     */
+    default void missResolved(long nanos) {
+    }
+
+    /**
+     * @param nanos The time spent merging the deltas of a context (eager materialization)
+     */
+    default void merged(long nanos) {
+    }
+
+    /**
+     * @param phase The phase of loading
+     * @param nanos The time spent in the phase
+     */
+    default void loadPhase(LoadPhase phase, long nanos) {
+    }
+
+    /**
+     * @param name  The name of a configuration file, as reported by {@link Loader#getParseTimings()}
+     * @param nanos The time spent parsing the file
+     */
+    default void fileParsed(String name, long nanos) {
+    }
+}
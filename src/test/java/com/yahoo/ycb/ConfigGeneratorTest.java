@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ConfigGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGenerate() throws IOException {
+        File directory = folder.newFolder();
+        ConfigGenerator.builder().dimensions(3).depth(2).fanOut(2).bundles(1500).deltaSize(20).nesting(2).seed(7)
+                .build().write(directory);
+
+        FileSystemLoader loader = new FileSystemLoader(directory);
+        assertEquals(3, loader.getDimensions().size());
+        assertEquals(Arrays.asList("*", "d0_0", "d0_0_0", "d0_0_1", "d0_1", "d0_1_0", "d0_1_1"),
+                loader.getDimensions().get(0).traverse());
+        assertEquals(1501, loader.getBundles().size());
+        assertTrue(new File(directory, "bundles1.yml").isFile());
+
+        Configuration configuration = Configuration.load(loader);
+        assertEquals(Collections.emptyList(), configuration.validate());
+        assertEquals(true, configuration.project(Collections.emptyMap()).getBoolean("key0.nested.nested.enabled"));
+    }
+
+    @Test
+    public void testSeed() throws IOException {
+        File first = folder.newFolder();
+        File second = folder.newFolder();
+        ConfigGenerator.builder().seed(42).build().write(first);
+        ConfigGenerator.builder().seed(42).build().write(second);
+
+        for (String name : first.list()) {
+            assertArrayEquals(Files.readAllBytes(new File(first, name).toPath()), Files.readAllBytes(new File(second, name).toPath()));
+        }
+    }
+}
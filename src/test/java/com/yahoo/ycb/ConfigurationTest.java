@@ -5,14 +5,30 @@
 
 package com.yahoo.ycb;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableMap;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
@@ -154,6 +170,36 @@ public class ConfigurationTest {
         assertEquals("no", projection.getText("service_y/modules/generic"));
     }
 
+    @Test
+    public void testCompilePath() throws IOException {
+        Loader loader = TestUtils.getLoader("example1");
+
+        Configuration configuration = Configuration.load(loader);
+
+        ConfigPath path = configuration.compilePath("feature.functionality_a");
+        assertSame(path, configuration.compilePath("feature.functionality_a"));
+        assertNotSame(path, configuration.compilePath("feature.functionality_b"));
+        assertEquals("feature.functionality_a", path.getPath());
+
+        HashMap<String, String> context = new HashMap<>();
+        context.put("network", "internal");
+
+        Configuration.Projection projection = configuration.project(context);
+
+        assertEquals(20, projection.getInteger(path));
+        assertEquals(20, projection.getInteger(path, 0));
+        assertEquals(20L, projection.getLong(path));
+        assertEquals("20", projection.getText(path));
+        assertEquals(0, projection.getInteger(configuration.compilePath("feature.missing")));
+        assertEquals(-1, projection.getInteger(configuration.compilePath("feature.missing"), -1));
+
+        // paths compiled with the previous separator keep their segments
+        configuration.setPathSeparator("\\/");
+        assertEquals(20, projection.getInteger(path));
+        assertEquals(20, projection.getInteger("feature/functionality_a"));
+        assertNotSame(path, configuration.compilePath("feature.functionality_a"));
+    }
+
     @Test
     public void testGetList() throws IOException {
         Loader loader = TestUtils.getLoader("example1");
@@ -195,6 +241,37 @@ public class ConfigurationTest {
         assertEquals(40, (int) result.get("z"));
     }
 
+    @Test
+    public void testGetObjectCached() throws IOException {
+        Loader loader = TestUtils.getLoader("example1");
+
+        Configuration configuration = Configuration.load(loader);
+
+        HashMap<String, String> context = new HashMap<>();
+        context.put("user_type", "premium");
+
+        ConfigPath params = configuration.compilePath("crumb.params");
+        Map<String, Integer> result = configuration.project(context).getObject(params, Map.class);
+
+        // deserialized once per context, path and type
+        assertSame(result, configuration.project(context).getObject(params, Map.class));
+
+        Map<String, Long> typed = configuration.project(context).getObject(params, new TypeReference<Map<String, Long>>() {});
+        assertNotSame(result, typed);
+        assertEquals(40L, (long) typed.get("z"));
+        assertSame(typed, configuration.project(context).getObject(params, new TypeReference<Map<String, Long>>() {}));
+
+        assertNotSame(result, configuration.project(new HashMap<>()).getObject(params, Map.class));
+
+        // String paths deserialize a new object, which the caller may modify
+        Map<String, Integer> copy = configuration.project(context).getObject("crumb.params", Map.class);
+        assertEquals(result, copy);
+        assertNotSame(result, copy);
+        copy.clear();
+        assertEquals(result, configuration.project(context).getObject("crumb.params", Map.class));
+        assertEquals(3, result.size());
+    }
+
     @Test
     public void testGetSimpleTypes() throws IOException {
         Loader loader = TestUtils.getLoader("example1");
@@ -211,6 +288,206 @@ public class ConfigurationTest {
         assertEquals(58741503419348L, projection.getLong("crumb.limit"));
     }
 
+    @Test
+    public void testMaterialization() throws IOException {
+        Loader loader = TestUtils.getLoader("example2");
+
+        Configuration lazy = Configuration.load(loader);
+        Configuration eager = Configuration.load(loader, new HashMap<>(), MaterializationPolicy.eager(1000));
+
+        assertFalse(lazy.isMaterialized());
+        assertTrue(eager.isMaterialized());
+
+        for (Map<String, String> context : lazy.traverseContexts(loader.getDimensions())) {
+            assertEquals(lazy.project(context).getJson("maestro"), eager.project(context).getJson("maestro"));
+            assertEquals(lazy.project(context).getText("maestro.enable_debug"), eager.project(context).getText("maestro.enable_debug"));
+            // merged ahead of time, not stacked
+            assertFalse(eager.project(context).getJson("maestro") instanceof OverlayNode);
+        }
+
+        // budget exceeded, falls back to lazy projections
+        assertFalse(Configuration.load(loader, new HashMap<>(), MaterializationPolicy.eager(10)).isMaterialized());
+        assertFalse(Configuration.load(loader, new HashMap<>(), MaterializationPolicy.eager(1000, 100)).isMaterialized());
+    }
+
+    @Test
+    public void testDynamicPaths() throws IOException {
+        Configuration configuration = Configuration.builder()
+                .cacheSpec(CacheSpec.builder().maximumBytes(100 * 512).build())
+                .load(TestUtils.getLoader("example1"));
+        Configuration.Projection projection = configuration.project(Collections.emptyMap());
+
+        // paths built on the fly are not interned forever
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(NullNode.getInstance(), projection.getJson("feature.missing_" + i));
+        }
+        assertTrue(configuration.internedPaths() <= 100);
+
+        // explicitly compiled paths are, and reuse the path already used by the String getters
+        assertEquals(10, projection.getInteger("feature.functionality_a"));
+        ConfigPath path = configuration.compilePath("feature.functionality_a");
+        for (int i = 0; i < 1000; i++) {
+            projection.getJson("feature.missing_" + i);
+        }
+        assertSame(path, configuration.compilePath("feature.functionality_a"));
+        assertEquals(10, projection.getInteger("feature.functionality_a"));
+    }
+
+    @Test
+    public void testRetainBundles() throws IOException {
+        Configuration configuration = Configuration.builder().retainBundles(false).load(TestUtils.getLoader("example1"));
+        assertEquals(20, configuration.project(Collections.singletonMap("network", "internal")).getInteger("feature.functionality_a"));
+
+        try {
+            configuration.applyBundleChanges(Collections.emptyList(), Collections.emptyList());
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            configuration.writeSnapshot(new ByteArrayOutputStream());
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMaterializedBundleChanges() throws IOException {
+        Configuration eager = Configuration.load(TestUtils.getLoader("example2"), new HashMap<>(), MaterializationPolicy.eager(1000));
+        Map<String, String> production = Collections.singletonMap("environment", "production");
+
+        Configuration.Projection projection = eager.project(production);
+        assertFalse(projection.getJson("maestro.enable_super_new_api").booleanValue());
+
+        ObjectNode delta = JsonNodeFactory.instance.objectNode();
+        delta.putObject("maestro").put("enable_super_new_api", true);
+        Bundle added = new Bundle(production, delta);
+        eager.applyBundleChanges(Collections.singletonList(added), Collections.emptyList());
+
+        // existing projections observe the changes too
+        assertTrue(projection.getJson("maestro.enable_super_new_api").booleanValue());
+        assertTrue(eager.project(production).getJson("maestro.enable_super_new_api").booleanValue());
+
+        eager.applyBundleChanges(Collections.emptyList(), Collections.singletonList(added));
+        assertFalse(projection.getJson("maestro.enable_super_new_api").booleanValue());
+    }
+
+    @Test
+    public void testContextKey() throws IOException {
+        Loader loader = TestUtils.getLoader("example1");
+
+        Configuration configuration = Configuration.load(loader);
+
+        HashMap<String, String> context = new HashMap<>();
+        context.put("environment", "dev");
+        context.put("network", "internal");
+
+        ContextKey key = configuration.contextKey(context);
+        assertEquals(context, key.getContext());
+
+        // unknown dimensions and explicit "any" values do not change the key
+        HashMap<String, String> other = new HashMap<>(context);
+        other.put("unknown", "value");
+        other.put("bucket", "*");
+        assertEquals(key, configuration.contextKey(other));
+        assertEquals(key.hashCode(), configuration.contextKey(other).hashCode());
+
+        other.put("environment", "demo");
+        assertNotEquals(key, configuration.contextKey(other));
+
+        Configuration.Projection projection = configuration.project(key);
+        assertEquals(context, projection.getContext());
+        assertEquals(20, projection.getInteger("feature.functionality_a"));
+        assertEquals("www.example-dev.com", projection.getText("service_x.api_config.endpoint"));
+
+        // a key from another configuration is recompiled
+        Map<String, String> fixedContext = new HashMap<>();
+        fixedContext.put("environment", "production");
+        Configuration fixed = Configuration.load(loader, fixedContext);
+        assertEquals("www.example-prod.com", fixed.project(key).getText("service_x.api_config.endpoint"));
+
+        // null values are tolerated, and unknown values are left out of a context rebuilt from ordinals
+        HashMap<String, String> withNull = new HashMap<>(context);
+        withNull.put("bucket", null);
+        ContextKey nullKey = configuration.contextKey(withNull);
+        assertEquals(withNull, nullKey.getContext());
+        assertNotNull(configuration.project(withNull));
+        ContextKey unknown = ContextKey.create(nullKey.getDimensions(), nullKey.getOrdinals());
+        assertFalse(unknown.getContext().containsKey("bucket"));
+        assertEquals("dev", unknown.getContext().get("environment"));
+    }
+
+    @Test
+    public void testApplyBundleChanges() throws IOException {
+        Loader loader = TestUtils.getLoader("example1");
+
+        Configuration configuration = Configuration.load(loader);
+
+        HashMap<String, String> internal = new HashMap<>();
+        internal.put("network", "internal");
+        HashMap<String, String> dev = new HashMap<>();
+        dev.put("environment", "dev");
+
+        Configuration.Projection master = configuration.project(new HashMap<>());
+        Configuration.Projection projection = configuration.project(internal);
+        assertEquals(20, projection.getInteger("feature.functionality_a"));
+        assertEquals(10, projection.getInteger("feature.functionality_b"));
+        assertEquals(10, master.getInteger("feature.functionality_b"));
+
+        ObjectNode delta = JsonNodeFactory.instance.objectNode();
+        delta.putObject("feature").put("functionality_b", 30);
+        Bundle added = new Bundle(internal, delta);
+
+        // remove the original {network: internal} bundle
+        Bundle removed = loader.getBundles().stream()
+                .filter(bundle -> bundle.getContext().equals(internal) && bundle.getDelta().has("feature"))
+                .findFirst()
+                .get();
+
+        configuration.applyBundleChanges(Collections.singletonList(added), Collections.singletonList(removed));
+
+        assertEquals(10, projection.getInteger("feature.functionality_a"));
+        assertEquals(30, projection.getInteger("feature.functionality_b"));
+        assertEquals(10, master.getInteger("feature.functionality_b"));
+        assertEquals(20, configuration.project(dev).getInteger("feature.functionality_b"));
+        assertEquals("GET", projection.getText("routes.main_route.method"));
+
+        HashMap<String, String> internalDev = new HashMap<>(internal);
+        internalDev.put("environment", "dev");
+        assertEquals(20, configuration.project(internalDev).getInteger("feature.functionality_b"));
+        assertEquals(10, configuration.project(internalDev).getInteger("feature.functionality_a"));
+
+        configuration.applyBundleChanges(Collections.emptyList(), Collections.singletonList(added));
+        assertEquals(10, projection.getInteger("feature.functionality_b"));
+        assertEquals(10, projection.getInteger("feature.functionality_a"));
+    }
+
+    @Test
+    public void testContexts() throws IOException {
+        Loader loader = TestUtils.getLoader("example2");
+
+        Configuration configuration = Configuration.load(loader);
+
+        List<ContextKey> contexts = configuration.contexts().collect(Collectors.toList());
+        assertEquals(configuration.traverseContexts(loader.getDimensions()).size(), contexts.size());
+        assertEquals(contexts, configuration.contexts().parallel().collect(Collectors.toList()));
+        assertEquals(contexts.size(), new HashSet<>(contexts).size());
+
+        List<ContextKey> distinct = configuration.contexts(true).collect(Collectors.toList());
+        assertTrue(distinct.size() < contexts.size());
+        assertTrue(contexts.containsAll(distinct));
+
+        // every projected configuration is projected by some distinct context
+        Set<String> all = contexts.stream()
+                .map(key -> configuration.project(key).getJson("maestro").toString())
+                .collect(Collectors.toSet());
+        Set<String> reached = distinct.stream()
+                .map(key -> configuration.project(key).getJson("maestro").toString())
+                .collect(Collectors.toSet());
+        assertEquals(all, reached);
+    }
+
     @Test
     public void testTraverseContext() throws IOException {
         Loader loader = TestUtils.getLoader("example2");
@@ -315,4 +592,181 @@ public class ConfigurationTest {
             i++;
         }
     }
+
+    @Test
+    public void testMetrics() throws IOException {
+        InMemoryYcbMetrics metrics = new InMemoryYcbMetrics();
+        Configuration configuration = Configuration.builder().metrics(metrics).load(TestUtils.getLoader("example1"));
+
+        assertEquals(EnumSet.of(YcbMetrics.LoadPhase.DIMENSIONS, YcbMetrics.LoadPhase.BUNDLES,
+                YcbMetrics.LoadPhase.SORT, YcbMetrics.LoadPhase.INSERT), metrics.getLoadTimings().keySet());
+        assertTrue(metrics.getParseTimings().containsKey("features.yml"));
+
+        Configuration.Projection projection = configuration.project(Collections.emptyMap());
+        assertEquals(10, projection.getInteger("feature.functionality_a"));
+        assertEquals(10, projection.getInteger("feature.functionality_a"));
+
+        assertEquals(1, metrics.getHits());
+        assertEquals(1, metrics.getMisses());
+        assertEquals(1, metrics.getMissLatency().getCount());
+        assertTrue(metrics.getMissLatency().getPercentileNanos(50) >= metrics.getMissLatency().getMeanNanos());
+
+        metrics = new InMemoryYcbMetrics();
+        Configuration.builder().metrics(metrics).materializationPolicy(MaterializationPolicy.eager(1000))
+                .load(TestUtils.getLoader("example2"));
+        assertTrue(metrics.getLoadTimings().containsKey(YcbMetrics.LoadPhase.MATERIALIZE));
+        assertTrue(metrics.getMergeLatency().getCount() > 0);
+    }
+
+    @Test
+    public void testGetAll() throws IOException {
+        Loader loader = TestUtils.getLoader("example1");
+        Configuration batched = Configuration.load(loader);
+        Configuration single = Configuration.load(loader);
+        List<String> paths = Arrays.asList("feature", "feature.functionality_a", "service_x", "service_x.endpoint",
+                "routes", "crumb", "missing", "feature.missing");
+
+        List<Map<String, String>> contexts = Arrays.asList(Collections.emptyMap(),
+                Collections.singletonMap("environment", "qa"),
+                Collections.singletonMap("bucket", "BUCKET_006"),
+                ImmutableMap.of("bucket", "BUCKET_006", "environment", "local", "network", "internal"));
+
+        for (Map<String, String> context : contexts) {
+            Configuration.Projection projection = single.project(context);
+            Map<String, JsonNode> values = batched.project(context).getAll(paths);
+
+            assertEquals(paths, new ArrayList<>(values.keySet()));
+            for (String path : paths) {
+                assertEquals(path + " in " + context, projection.getJson(path), values.get(path));
+            }
+            // now cached
+            assertEquals(values, batched.project(context).getAll(paths));
+        }
+
+        Configuration.Projection projection = batched.project(Collections.singletonMap("network", "internal"));
+        assertEquals(Arrays.asList(IntNode.valueOf(20), NullNode.getInstance()),
+                projection.getAll(batched.compilePath("feature.functionality_a"), batched.compilePath("missing")));
+    }
+
+    @Test
+    public void testGetAllNestedLevels() throws IOException {
+        // levels are merged one at a time: the scalar of {d0: a} replaces the master object, and is replaced in turn
+        // by the objects of the {d0: a} subtree merged together
+        Map<String, String> context = ImmutableMap.of("d0", "a", "d1", "x");
+        Configuration configuration = Configuration.load(TestUtils.getLoader("example4"));
+        JsonNode expected = configuration.project(context).getJson("p");
+        assertEquals("{\"k\":1,\"j\":1,\"m\":1}", expected.toString());
+
+        Configuration batched = Configuration.load(TestUtils.getLoader("example4"));
+        assertEquals(expected, batched.project(context).getAll(Collections.singletonList("p")).get("p"));
+        assertEquals(expected, batched.project(context).getJson("p"));
+        assertEquals(Collections.singletonList(expected), batched.projectAll(Collections.singletonList(context), "p"));
+    }
+
+    @Test
+    public void testProjectAll() throws IOException {
+        Loader loader = TestUtils.getLoader("example1");
+        Configuration configuration = Configuration.load(loader);
+        Configuration reference = Configuration.load(loader);
+
+        List<Map<String, String>> contexts = configuration.contexts().skip(20000).limit(5000)
+                .map(ContextKey::getContext).collect(Collectors.toList());
+        contexts.add(Collections.singletonMap("environment", "unknown"));
+        contexts.add(Collections.emptyMap());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String path : Arrays.asList("feature", "service_x.endpoint", "missing")) {
+                List<JsonNode> sequential = configuration.projectAll(contexts, path);
+                List<JsonNode> parallel = configuration.projectAll(contexts, path, pool);
+
+                assertEquals(contexts.size(), sequential.size());
+                for (int i = 0; i < contexts.size(); i++) {
+                    JsonNode expected = reference.project(contexts.get(i)).getJson(path);
+                    assertEquals(path + " in " + contexts.get(i), expected, sequential.get(i));
+                    assertEquals(path + " in " + contexts.get(i), expected, parallel.get(i));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testCanonicalContexts() throws IOException {
+        InMemoryYcbMetrics metrics = new InMemoryYcbMetrics();
+        Configuration configuration = Configuration.builder().metrics(metrics).load(TestUtils.getLoader("example1"));
+
+        // no bundle for qa nor local, both inherit everything from dev
+        Configuration.Projection local = configuration.project(Collections.singletonMap("environment", "local"));
+        Configuration.Projection qa = configuration.project(Collections.singletonMap("environment", "qa"));
+        assertEquals(20, local.getInteger("feature.functionality_b"));
+        assertEquals(20, qa.getInteger("feature.functionality_b"));
+        assertEquals(1, metrics.getMisses());
+        assertEquals(1, metrics.getHits());
+        assertEquals(Collections.singletonMap("environment", "qa"), qa.getContext());
+
+        ObjectNode delta = JsonNodeFactory.instance.objectNode();
+        delta.putObject("feature").put("functionality_b", 30);
+        Bundle added = new Bundle(Collections.singletonMap("environment", "qa"), delta);
+        configuration.applyBundleChanges(Collections.singletonList(added), Collections.emptyList());
+
+        assertEquals(30, qa.getInteger("feature.functionality_b"));
+        assertEquals(20, local.getInteger("feature.functionality_b"));
+
+        configuration.applyBundleChanges(Collections.emptyList(), Collections.singletonList(added));
+        assertEquals(20, qa.getInteger("feature.functionality_b"));
+    }
+
+    @Test
+    public void testSharedValuesConsistency() throws IOException {
+        CacheSpec unsharedSpec = CacheSpec.builder().maximumSharedBytes(0).build();
+
+        for (String example : Arrays.asList("example1", "example2", "example4")) {
+            Loader loader = TestUtils.getLoader(example);
+            Configuration shared = Configuration.load(loader);
+            Configuration unshared = Configuration.builder().cacheSpec(unsharedSpec).load(loader);
+            Set<String> keys = LookupTree.create(loader, Collections.emptyMap()).getKeys();
+
+            int count = 0;
+            for (Map<String, String> context : shared.traverseContexts(loader.getDimensions())) {
+                for (String key : keys) {
+                    assertEquals(context + " " + key, unshared.project(context).getJson(key), shared.project(context).getJson(key));
+                }
+                if (++count == 500) {
+                    break;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSharedValues() throws IOException {
+        InMemoryYcbMetrics metrics = new InMemoryYcbMetrics();
+        Configuration configuration = Configuration.builder().metrics(metrics).load(TestUtils.getLoader("example1"));
+
+        // premium has a bundle (for crumb only), so the contexts are not canonically equal, but their features
+        // are merged from the same leaves
+        Configuration.Projection premium = configuration.project(ImmutableMap.of("environment", "dev", "user_type", "premium"));
+        Configuration.Projection free = configuration.project(ImmutableMap.of("environment", "dev", "user_type", "free"));
+        assertSame(premium.getJson("feature"), free.getJson("feature"));
+        assertEquals(20, free.getInteger("feature.functionality_b"));
+        assertEquals(1, metrics.getSharedValues());
+        assertNotSame(premium.getJson("crumb"), free.getJson("crumb"));
+
+        ObjectNode delta = JsonNodeFactory.instance.objectNode();
+        delta.putObject("feature").put("functionality_b", 30);
+        configuration.applyBundleChanges(Collections.singletonList(
+                new Bundle(Collections.singletonMap("environment", "dev"), delta)), Collections.emptyList());
+        assertEquals(30, premium.getInteger("feature.functionality_b"));
+        assertEquals(30, free.getInteger("feature.functionality_b"));
+        assertEquals(free.getAll(Collections.singletonList("feature")).get("feature"), premium.getJson("feature"));
+
+        Configuration unshared = Configuration.builder().cacheSpec(CacheSpec.builder().maximumSharedBytes(0).build())
+                .load(TestUtils.getLoader("example1"));
+        premium = unshared.project(ImmutableMap.of("environment", "dev", "user_type", "premium"));
+        free = unshared.project(ImmutableMap.of("environment", "dev", "user_type", "free"));
+        assertNotSame(premium.getJson("feature"), free.getJson("feature"));
+        assertEquals(premium.getJson("feature"), free.getJson("feature"));
+    }
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class FileSystemLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPerFileParsing() throws IOException {
+        write("dimensions.yml", "- dimensions:\n    - environment:\n        dev:\n        production:\n");
+        write("a.yml", "- settings: [master]\n  a: 1\n");
+        write("b.yml", "# only comments\n");
+        write("c.yml", "- settings: [environment: dev]\n  a: 2\n");
+
+        FileSystemLoader loader = new FileSystemLoader(folder.getRoot());
+        Configuration configuration = Configuration.load(loader);
+
+        assertEquals(1, configuration.project(Collections.emptyMap()).getInteger("a"));
+        assertEquals(2, configuration.project(Collections.singletonMap("environment", "dev")).getInteger("a"));
+        assertTrue(loader.getParseTimings().keySet().containsAll(Arrays.asList("dimensions.yml", "a.yml", "b.yml", "c.yml")));
+    }
+
+    @Test
+    public void testErrorNamesFile() throws IOException {
+        write("dimensions.yml", "- dimensions:\n    - environment:\n        dev:\n");
+        write("a.yml", "- settings: [master]\n  a: 1\n");
+        write("broken.yml", "- settings: [master]\n  a: [1, 2\n");
+
+        try {
+            new FileSystemLoader(folder.getRoot()).getBundles();
+            fail("Expecting IOException to be thrown for an invalid file");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Error parsing broken.yml"));
+        }
+    }
+
+    private void write(String name, String content) throws IOException {
+        Files.write(new File(folder.getRoot(), name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
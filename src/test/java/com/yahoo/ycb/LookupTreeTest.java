@@ -5,12 +5,23 @@
 
 package com.yahoo.ycb;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class LookupTreeTest {
 
@@ -36,4 +47,195 @@ public class LookupTreeTest {
         catch (IllegalArgumentException e) {}
     }
 
+    @Test
+    public void testMergeDeltaSharing() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode delta1 = mapper.readTree("{\"a\": {\"b\": 1, \"c\": 2}, \"d\": {\"e\": 3}}");
+        JsonNode delta2 = mapper.readTree("{\"a\": {\"c\": 4}, \"f\": 5}");
+        String original1 = delta1.toString();
+        String original2 = delta2.toString();
+
+        JsonNode merged = LookupTree.mergeDelta(delta1, delta2);
+        Assert.assertEquals("{\"a\":{\"b\":1,\"c\":4},\"d\":{\"e\":3},\"f\":5}", merged.toString());
+        Assert.assertSame(delta1.get("d"), merged.get("d"));
+        Assert.assertEquals(original1, delta1.toString());
+        Assert.assertEquals(original2, delta2.toString());
+
+        Assert.assertSame(delta1, LookupTree.mergeDelta(delta1, mapper.readTree("{\"a\": {\"b\": null}}")));
+        Assert.assertSame(delta2, LookupTree.mergeDelta(mapper.readTree("{}"), delta2));
+    }
+
+    @Test
+    public void testMergeDeltaErrorPath() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode master = mapper.readTree("{\"a\": {\"b\": {\"c\": 1}}}");
+
+        try {
+            LookupTree.mergeDelta(master, mapper.readTree("{\"a\": {\"b\": {\"c\": \"x\"}}}"), true);
+            Assert.fail("Expecting ValidationException to be thrown for a type change");
+        } catch (LookupTree.ValidationException e) {
+            Assert.assertEquals(Arrays.asList("a", "b", "c"), e.getPath());
+            Assert.assertEquals(ValidationError.Reason.REPLACING_DIFFERENT_TYPES, e.getReason());
+        }
+
+        try {
+            LookupTree.mergeDelta(master, mapper.readTree("{\"a\": {\"x\": 1}}"), true);
+            Assert.fail("Expecting ValidationException to be thrown for a missing master property");
+        } catch (LookupTree.ValidationException e) {
+            Assert.assertEquals(Arrays.asList("a", "x"), e.getPath());
+            Assert.assertEquals(ValidationError.Reason.MISSING_MASTER_PROPERTY, e.getReason());
+        }
+    }
+
+    @Test
+    public void testMergeDeltaErrorOrder() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode master = mapper.readTree("{\"a\": 40, \"b\": [4]}");
+
+        // the shared keys are checked in the order of the master, before the keys the master is missing
+        try {
+            LookupTree.mergeDelta(master, mapper.readTree("{\"c\": {\"x\": 1}, \"b\": {\"x\": 1}, \"a\": {\"x\": 1}}"), true);
+            Assert.fail("Expecting ValidationException to be thrown for a type change");
+        } catch (LookupTree.ValidationException e) {
+            Assert.assertEquals(Collections.singletonList("a"), e.getPath());
+            Assert.assertEquals(ValidationError.Reason.REPLACING_DIFFERENT_TYPES, e.getReason());
+        }
+
+        try {
+            LookupTree.mergeDelta(master, mapper.readTree("{\"d\": 1, \"c\": 1, \"a\": 41}"), true);
+            Assert.fail("Expecting ValidationException to be thrown for a missing master property");
+        } catch (LookupTree.ValidationException e) {
+            Assert.assertEquals(Collections.singletonList("d"), e.getPath());
+            Assert.assertEquals(ValidationError.Reason.MISSING_MASTER_PROPERTY, e.getReason());
+        }
+    }
+
+    @Test
+    public void testOverlay() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<JsonNode> layers = Arrays.asList(
+                mapper.readTree("{\"a\": {\"b\": 1, \"c\": [1]}, \"d\": \"x\", \"e\": {\"f\": 1}}"),
+                null,
+                mapper.readTree("{\"a\": {\"c\": [2], \"g\": null}, \"e\": 2, \"h\": true}"),
+                mapper.readTree("{\"a\": null, \"d\": \"y\"}"));
+
+        JsonNode merged = null;
+        for (JsonNode layer : layers) {
+            merged = LookupTree.mergeDelta(merged, layer);
+        }
+
+        JsonNode overlay = OverlayNode.overlay(layers);
+        Assert.assertTrue(overlay instanceof OverlayNode);
+        Assert.assertEquals("y", overlay.get("d").asText());
+        Assert.assertEquals(2, overlay.get("e").asInt());
+        Assert.assertEquals(1, overlay.get("a").get("b").asInt());
+        Assert.assertNull(overlay.get("missing"));
+        Assert.assertSame(overlay.get("a"), overlay.get("a"));
+        Assert.assertEquals(merged.toString(), overlay.toString());
+        Assert.assertEquals(merged, overlay);
+
+        try {
+            ((ObjectNode) overlay).put("d", "z");
+            Assert.fail("Expecting UnsupportedOperationException to be thrown when modifying an overlay");
+        } catch (UnsupportedOperationException e) {}
+
+        Assert.assertSame(layers.get(3).get("d"), OverlayNode.overlay(Arrays.asList(layers.get(0), layers.get(3).get("d"))));
+        Assert.assertNull(OverlayNode.overlay(Arrays.asList(null, null)));
+
+        ObjectNode copy = ((ObjectNode) overlay).deepCopy();
+        Assert.assertEquals(merged, copy);
+        copy.put("d", "z");
+        Assert.assertEquals("y", overlay.get("d").asText());
+    }
+
+    @Test
+    public void testNestedOverlay() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        OverlayNode inner = (OverlayNode) OverlayNode.overlay(Arrays.asList(
+                mapper.readTree("{\"a\": 1, \"b\": {\"c\": 1}}"), mapper.readTree("{\"a\": 2}")));
+
+        // stacking or merging an overlay does not materialize it
+        JsonNode outer = OverlayNode.overlay(Arrays.asList(inner, mapper.readTree("{\"d\": 3}")));
+        Assert.assertSame(inner, LookupTree.mergeDelta(inner, mapper.createObjectNode()));
+        Assert.assertEquals(2, outer.get("a").asInt());
+        Assert.assertEquals(1, outer.get("b").get("c").asInt());
+
+        // weighing an overlay counts its nested overlays, not the values of the layers (retained by the leaves)
+        Assert.assertEquals(JsonSizeEstimator.estimate(outer), JsonSizeEstimator.estimate(
+                OverlayNode.overlay(Arrays.asList(inner, mapper.readTree("{\"d\": 3, \"e\": [1, 2, 3]}")))));
+        Assert.assertTrue(JsonSizeEstimator.estimate(outer) > JsonSizeEstimator.estimate(inner));
+        Assert.assertFalse(inner.isMaterialized());
+
+        Assert.assertEquals(3, outer.size());
+        Assert.assertTrue(inner.isMaterialized());
+        Assert.assertFalse(inner.isEmpty());
+    }
+
+    @Test
+    public void testKeyIndex() throws IOException {
+        Loader loader = TestUtils.getLoader("example1");
+        LookupTree tree = LookupTree.create(loader, Collections.emptyMap());
+
+        Assert.assertTrue(tree.getKeys().containsAll(Arrays.asList("crumb", "service_x")));
+        Assert.assertTrue(tree.defines(new String[]{"crumb", "params"}));
+        Assert.assertTrue(tree.defines(new String[0]));
+        Assert.assertFalse(tree.defines(new String[]{"unknown"}));
+
+        Set<String> keys = new HashSet<>();
+        tree.traverse().forEach(pathLeaf -> pathLeaf.getDelta().fieldNames().forEachRemaining(keys::add));
+        Assert.assertEquals(keys, tree.getKeys());
+    }
+
+    @Test
+    public void testParallelCreate() throws IOException {
+        Loader loader = TestUtils.getLoader("example1");
+        Map<String, String> fixedContext = Collections.singletonMap("network", "internal");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            LookupTree sequential = LookupTree.create(loader.getDimensions(), loader.getBundles(), fixedContext);
+            LookupTree parallel = LookupTree.create(loader.getDimensions(), loader.getBundles(), fixedContext, executor);
+
+            Assert.assertEquals(toString(sequential.traverse()), toString(parallel.traverse()));
+            Assert.assertEquals(sequential.getKeys(), parallel.getKeys());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCanonicalValues() throws IOException {
+        Loader loader = TestUtils.getLoader("example1");
+        List<Dimension> dimensions = loader.getDimensions();
+        LookupTree tree = LookupTree.create(loader, Collections.emptyMap());
+        int[][] canonical = tree.canonicalValues(dimensions);
+
+        Dimension environment = dimensions.get(0);
+        Assert.assertEquals("environment", environment.getName());
+        Assert.assertEquals(environment.getOrdinal("dev"), canonical[0][environment.getOrdinal("local")]);
+        Assert.assertEquals(environment.getOrdinal("dev"), canonical[0][environment.getOrdinal("dev")]);
+        Assert.assertEquals(environment.getOrdinal("demo"), canonical[0][environment.getOrdinal("demo")]);
+        Assert.assertEquals(0, canonical[0][environment.getOrdinal("stage")]);
+
+        // canonical values project the same configuration
+        for (int i = 0; i < dimensions.size(); i++) {
+            for (int ordinal = 0; ordinal < dimensions.get(i).size(); ordinal++) {
+                int[] context = new int[dimensions.size()];
+                context[i] = ordinal;
+                int[] canonicalContext = new int[dimensions.size()];
+                canonicalContext[i] = canonical[i][ordinal];
+
+                Assert.assertEquals(tree.project(context, 0, new String[0]), tree.project(canonicalContext, 0, new String[0]));
+            }
+        }
+    }
+
+    private static String toString(List<LookupTree.PathLeaf> leaves) {
+        StringBuilder builder = new StringBuilder();
+        for (LookupTree.PathLeaf leaf : leaves) {
+            builder.append(leaf.getContextValues()).append(" -> ").append(leaf.getDelta()).append('\n');
+        }
+        return builder.toString();
+    }
+
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ReloadingConfigurationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String DIMENSIONS = "- dimensions:\n    - environment:\n        stage:\n        production:\n";
+
+    private File createConfig(String value) throws IOException {
+        final File directory = folder.getRoot();
+        write(new File(directory, "dimensions.yml"), DIMENSIONS);
+        write(new File(directory, "settings.yml"), settings(value));
+        return directory;
+    }
+
+    private static String settings(String value) {
+        return "- settings: {}\n  service:\n    endpoint: " + value + "\n" +
+                "- settings: {environment: production}\n  service:\n    timeout: 10\n";
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReload() throws IOException {
+        final File directory = createConfig("www.example.com");
+
+        try (ReloadingConfiguration configuration = new ReloadingConfiguration(new FileSystemLoader(directory))) {
+            Map<String, String> context = new HashMap<>();
+            context.put("environment", "production");
+
+            Configuration.Projection before = configuration.project(context);
+            assertEquals("www.example.com", before.getText("service.endpoint"));
+
+            write(new File(directory, "settings.yml"), settings("www.example-new.com"));
+            configuration.reload();
+
+            assertEquals("www.example-new.com", configuration.project(context).getText("service.endpoint"));
+            assertEquals(10, configuration.project(context).getInteger("service.timeout"));
+
+            // projections keep the configuration they were created from
+            assertEquals("www.example.com", before.getText("service.endpoint"));
+        }
+    }
+
+    @Test
+    public void testWatch() throws IOException, InterruptedException {
+        final File directory = createConfig("www.example.com");
+
+        try (ReloadingConfiguration configuration = new ReloadingConfiguration(new FileSystemLoader(directory))) {
+            final Configuration initial = configuration.get();
+            assertEquals("www.example.com", configuration.project(new HashMap<>()).getText("service.endpoint"));
+
+            write(new File(directory, "settings.yml"), settings("www.example-new.com"));
+
+            for (int i = 0; i < 200 && configuration.get() == initial; i++) {
+                Thread.sleep(50);
+            }
+
+            assertEquals("www.example-new.com", configuration.project(new HashMap<>()).getText("service.endpoint"));
+        }
+    }
+
+    @Test
+    public void testFailedReloadKeepsConfiguration() throws IOException {
+        final File directory = createConfig("www.example.com");
+
+        try (ReloadingConfiguration configuration = new ReloadingConfiguration(new FileSystemLoader(directory))) {
+            write(new File(directory, "settings.yml"), "- settings: {environment: unknown}\n  service: {}\n");
+
+            try {
+                configuration.reload();
+                fail("Expecting IllegalArgumentException to be thrown for an invalid dimension value");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+
+            assertEquals("www.example.com", configuration.project(new HashMap<>()).getText("service.endpoint"));
+        }
+    }
+}
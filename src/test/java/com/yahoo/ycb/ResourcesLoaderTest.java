@@ -8,6 +8,8 @@ package com.yahoo.ycb;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import static org.junit.Assert.*;
@@ -72,4 +74,27 @@ public class ResourcesLoaderTest {
         assertEquals(20, projection.getInteger("feature.functionality_f"));
         assertEquals("www.example-dev.com", projection.getText("service_x.api_config.endpoint"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParseTimings() throws IOException {
+        Loader loader = new ResourcesLoader("example1/dimensions.yml", "example1/crumb.yml", "example1/features.yml");
+
+        loader.getDimensions();
+        loader.getBundles();
+
+        assertEquals(Arrays.asList("example1/dimensions.yml", "example1/crumb.yml", "example1/features.yml"),
+                new ArrayList<>(loader.getParseTimings().keySet()));
+    }
+
+    @Test
+    public void testMissingResource() throws IOException {
+        Loader loader = new ResourcesLoader("example1/dimensions.yml", "example1/crumb.yml", "example1/missing.yml");
+
+        try {
+            loader.getBundles();
+            fail("Expecting IOException to be thrown for a missing resource");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("example1/missing.yml"));
+        }
+    }
+}
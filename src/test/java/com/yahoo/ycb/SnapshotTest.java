@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SnapshotTest {
+
+    private static final List<String> KEYS = Arrays.asList("crumb", "feature", "routes", "service_x", "service_y");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Configuration configuration = Configuration.load(TestUtils.getLoader("example1"));
+        Configuration loaded = Configuration.loadSnapshot(write(configuration));
+
+        assertEquals(configuration.contexts(true).count(), loaded.contexts(true).count());
+        for (ContextKey key : configuration.contexts(true).collect(Collectors.toList())) {
+            for (String path : KEYS) {
+                assertEquals(configuration.project(key).getJson(path), loaded.project(key.getContext()).getJson(path));
+            }
+        }
+
+        Configuration.Projection projection = loaded.project(Collections.emptyMap());
+        assertEquals(58741503419348L, projection.getLong("crumb.limit"));
+        assertTrue(projection.getJson("crumb.limit").isLong());
+        assertEquals(0.83123, projection.getDouble("crumb.alpha"), 0);
+        assertEquals(configuration.validate().toString(), loaded.validate().toString());
+    }
+
+    @Test
+    public void testFixedContext() throws IOException {
+        Map<String, String> fixedContext = Collections.singletonMap("environment", "dev");
+        Configuration configuration = Configuration.load(TestUtils.getLoader("example1"), fixedContext);
+
+        SnapshotLoader loader = new SnapshotLoader(write(configuration));
+        assertEquals(fixedContext, loader.getFixedContext());
+
+        Configuration loaded = Configuration.loadSnapshot(write(configuration));
+        Map<String, String> context = new HashMap<>();
+        context.put("network", "internal");
+        assertEquals(configuration.project(context).getJson("feature"), loaded.project(context).getJson("feature"));
+        assertEquals("www.example-dev.com", loaded.project(context).getText("service_x.api_config.endpoint"));
+
+        try {
+            Configuration.load(loader);
+            fail("Expecting IllegalArgumentException to be thrown for a wider fixed context");
+        } catch (IllegalArgumentException e) {}
+
+        // bundles are applied again for a narrower fixed context
+        Map<String, String> narrower = new HashMap<>(fixedContext);
+        narrower.put("network", "internal");
+        Configuration narrowed = Configuration.load(loader, narrower);
+        assertEquals(configuration.project(context).getJson("feature"), narrowed.project(context).getJson("feature"));
+    }
+
+    @Test
+    public void testApplyBundleChanges() throws IOException {
+        Configuration loaded = Configuration.loadSnapshot(write(Configuration.load(TestUtils.getLoader("example1"))));
+
+        Bundle bundle = new Bundle(Collections.singletonMap("network", "external"),
+                LoadUtils.MAPPER.createObjectNode().set("feature",
+                        LoadUtils.MAPPER.createObjectNode().put("functionality_a", 30)));
+        loaded.applyBundleChanges(Collections.singletonList(bundle), Collections.emptyList());
+
+        assertEquals(30, loaded.project(Collections.singletonMap("network", "external")).getInteger("feature.functionality_a"));
+        assertEquals(10, loaded.project(Collections.emptyMap()).getInteger("feature.functionality_a"));
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        Configuration configuration = Configuration.load(TestUtils.getLoader("example1"));
+        Path path = write(configuration);
+        Configuration mapped = Configuration.loadSnapshot(path, true);
+
+        for (ContextKey key : configuration.contexts(true).collect(Collectors.toList())) {
+            for (String field : KEYS) {
+                assertEquals(configuration.project(key).getJson(field), mapped.project(key.getContext()).getJson(field));
+            }
+        }
+        assertEquals("www.example-prod.com", mapped.project(Collections.emptyMap()).getText("service_x.api_config.endpoint"));
+        assertEquals(configuration.validate().toString(), mapped.validate().toString());
+        assertEquals(new SnapshotLoader(path).getBundles(), new SnapshotLoader(path, true).getBundles());
+
+        // a mapped configuration writes the same snapshot
+        assertArrayEquals(Files.readAllBytes(path), Files.readAllBytes(write(mapped)));
+
+        Bundle bundle = new Bundle(Collections.singletonMap("network", "external"),
+                LoadUtils.MAPPER.createObjectNode().set("feature",
+                        LoadUtils.MAPPER.createObjectNode().put("functionality_a", 30)));
+        mapped.applyBundleChanges(Collections.singletonList(bundle), Collections.emptyList());
+        assertEquals(30, mapped.project(Collections.singletonMap("network", "external")).getInteger("feature.functionality_a"));
+        assertEquals(10, mapped.project(Collections.emptyMap()).getInteger("feature.functionality_a"));
+    }
+
+    @Test
+    public void testCorrupted() throws IOException {
+        Path path = write(Configuration.load(TestUtils.getLoader("example1")));
+        byte[] bytes = Files.readAllBytes(path);
+
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(path, bytes);
+        try {
+            Configuration.loadSnapshot(path);
+            fail("Expecting IOException to be thrown for a corrupted snapshot");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("checksum"));
+        }
+
+        bytes[7] = 99;
+        Files.write(path, bytes);
+        try {
+            Configuration.loadSnapshot(path);
+            fail("Expecting IOException to be thrown for an unsupported version");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("version"));
+        }
+    }
+
+    private Path write(Configuration configuration) throws IOException {
+        Path path = folder.newFile().toPath();
+        try (OutputStream output = Files.newOutputStream(path)) {
+            configuration.writeSnapshot(output);
+        }
+        return path;
+    }
+}
@@ -13,6 +13,7 @@ import java.net.URL;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static junit.framework.Assert.*;
 import static org.junit.Assert.assertEquals;
@@ -23,6 +24,8 @@ public class SystemPropertyOverrideTest {
     public void setUp() throws Exception {
         System.clearProperty("routes.main_route.method");
         System.clearProperty("service_x.api_config.endpoint");
+        System.clearProperty("crumb.limit");
+        System.clearProperty("undefined_service.timeout");
     }
 
     @Test
@@ -67,16 +70,56 @@ public class SystemPropertyOverrideTest {
 
         System.setProperty("routes.main_route.method", "PUT");
 
-        // must have unchanged
+        // overrides are a snapshot
+        assertEquals("GET", projection.getText("routes.main_route.method"));
+        configuration.refreshOverrides();
+
+        // must have changed
         assertEquals("PUT", projection.getText("routes.main_route.method"));
 
         assertEquals(58741503419348L, projection.getLong("crumb.limit"));
 
         System.setProperty("crumb.limit", "123871");
+        configuration.refreshOverrides();
 
-        // must have unchanged
+        // must have changed
         assertEquals(123871, projection.getLong("crumb.limit"));
 
         assertEquals("www.example-dev.com", projection.getText("service_x.api_config.endpoint"));
     }
+
+    @Test
+    public void testOverrideUndefinedKey() throws IOException {
+        Loader loader = TestUtils.getLoader("example1");
+
+        Configuration configuration = Configuration.load(loader, new HashMap<>());
+
+        Configuration.Projection projection = configuration.project(new HashMap<>(), true);
+
+        assertTrue(projection.getJson("undefined_service.timeout").isNull());
+
+        System.setProperty("undefined_service.timeout", "30");
+        configuration.refreshOverrides();
+
+        // no bundle defines the key, but it may still be overridden
+        assertEquals(30, projection.getInteger("undefined_service.timeout"));
+    }
+
+    @Test
+    public void testRefreshInterval() throws IOException, InterruptedException {
+        Loader loader = TestUtils.getLoader("example1");
+
+        Configuration configuration = Configuration.builder()
+                .overrideRefreshInterval(10, TimeUnit.MILLISECONDS)
+                .load(loader);
+
+        Configuration.Projection projection = configuration.project(new HashMap<>(), true);
+
+        assertEquals("www.example-prod.com", projection.getText("service_x.api_config.endpoint"));
+
+        System.setProperty("service_x.api_config.endpoint", "www.example-override.com");
+        Thread.sleep(50);
+
+        assertEquals("www.example-override.com", projection.getText("service_x.api_config.endpoint"));
+    }
 }
@@ -10,6 +10,8 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.Assert.*;
 
@@ -40,27 +42,61 @@ public class ValidationTest {
 
         assertEquals(errors.size(), 2);
 
-        assertEquals(errors.get(0).getReason(), ValidationError.Reason.MISSING_MASTER_PROPERTY);
+        assertEquals(errors.get(0).getReason(), ValidationError.Reason.REPLACING_DIFFERENT_TYPES);
         assertEquals(errors.get(0).getPath().size(), 2);
         assertEquals(errors.get(0).getPath().get(0), "maestro");
-        assertEquals(errors.get(0).getPath().get(1), "enabled_xx");
+        assertEquals(errors.get(0).getPath().get(1), "enable_debug");
 
         assertEquals(errors.get(0).getContextValues().size(), 4);
         assertEquals(errors.get(0).getContextValues().get(0), "*");
-        assertEquals(errors.get(0).getContextValues().get(1), "external");
+        assertEquals(errors.get(0).getContextValues().get(1), "*");
         assertEquals(errors.get(0).getContextValues().get(2), "*");
         assertEquals(errors.get(0).getContextValues().get(3), "production");
 
 
-        assertEquals(errors.get(1).getReason(), ValidationError.Reason.REPLACING_DIFFERENT_TYPES);
+        assertEquals(errors.get(1).getReason(), ValidationError.Reason.MISSING_MASTER_PROPERTY);
         assertEquals(errors.get(1).getPath().size(), 2);
         assertEquals(errors.get(1).getPath().get(0), "maestro");
-        assertEquals(errors.get(1).getPath().get(1), "enable_debug");
+        assertEquals(errors.get(1).getPath().get(1), "enabled_xx");
 
         assertEquals(errors.get(1).getContextValues().size(), 4);
         assertEquals(errors.get(1).getContextValues().get(0), "*");
-        assertEquals(errors.get(1).getContextValues().get(1), "*");
+        assertEquals(errors.get(1).getContextValues().get(1), "external");
         assertEquals(errors.get(1).getContextValues().get(2), "*");
         assertEquals(errors.get(1).getContextValues().get(3), "production");
     }
+
+    @Test
+    public void testValidationOptions() throws IOException {
+        Loader loader = TestUtils.getLoader("example3");
+
+        Configuration configuration = Configuration.load(loader);
+
+        List<ValidationError> errors = configuration.validate();
+
+        AtomicInteger validated = new AtomicInteger();
+        AtomicInteger total = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            List<ValidationError> parallel = configuration.validate(ValidationOptions.builder()
+                    .pool(pool)
+                    .progressListener((count, of) -> {
+                        validated.accumulateAndGet(count, Math::max);
+                        total.set(of);
+                    })
+                    .build());
+
+            assertEquals(errors.toString(), parallel.toString());
+            assertTrue(total.get() > 0);
+            assertEquals(total.get(), validated.get());
+        } finally {
+            pool.shutdown();
+        }
+
+        List<ValidationError> failFast = configuration.validate(ValidationOptions.builder().failFast().build());
+        assertEquals(1, failFast.size());
+
+        List<ValidationError> limited = configuration.validate(ValidationOptions.builder().maxErrors(2).build());
+        assertEquals(errors.toString(), limited.toString());
+    }
 }
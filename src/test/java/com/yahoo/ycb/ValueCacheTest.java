@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ValueCacheTest {
+
+    private static final ContextKey MASTER = ContextKey.create(Collections.emptyList(), Collections.emptyMap());
+
+    private final Map<String, ConfigPath> paths = new HashMap<>();
+
+    private ConfigPath path(String path) {
+        return paths.computeIfAbsent(path, p -> new ConfigPath(p, p.split("\\."), paths.size()));
+    }
+
+    @Test
+    public void testMemoryBudget() {
+        ValueCache cache = new ValueCache(CacheSpec.builder().maximumBytes(2000).build());
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(MASTER, path("path" + i), IntNode.valueOf(i));
+        }
+
+        assertTrue(cache.weightedSize() <= 2000);
+        assertTrue(cache.size() < 100);
+        assertEquals(IntNode.valueOf(99), cache.get(MASTER, path("path99")));
+        assertNull(cache.get(MASTER, path("path0")));
+
+        // values bigger than the whole budget are never cached
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append('x');
+        }
+        cache.put(MASTER, path("big"), TextNode.valueOf(text.toString()));
+        assertNull(cache.get(MASTER, path("big")));
+    }
+
+    @Test
+    public void testSharedWeight() {
+        ValueCache cache = new ValueCache(CacheSpec.builder().maximumBytes(2000).build());
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append('x');
+        }
+        TextNode big = TextNode.valueOf(text.toString());
+
+        // shared values are accounted by the shared values, each context caching them only pays for the reference
+        for (int i = 0; i < 10; i++) {
+            cache.put(MASTER, path("big" + i), big, true);
+        }
+        assertEquals(10, cache.size());
+        assertTrue(cache.weightedSize() < 2000);
+        assertSame(big, cache.get(MASTER, path("big9")));
+    }
+
+    @Test
+    public void testFrequencyAdmission() {
+        ValueCache cache = new ValueCache(CacheSpec.builder()
+                .maximumBytes(2000)
+                .evictionPolicy(CacheSpec.EvictionPolicy.FREQUENCY)
+                .build());
+
+        // hot values, accessed many times
+        for (int i = 0; i < 10; i++) {
+            cache.put(MASTER, path("hot" + i), IntNode.valueOf(i));
+            for (int j = 0; j < 10; j++) {
+                cache.get(MASTER, path("hot" + i));
+            }
+        }
+
+        // a scan of cold values must not flush the hot ones
+        for (int i = 0; i < 100; i++) {
+            if (cache.get(MASTER, path("cold" + i)) == null) {
+                cache.put(MASTER, path("cold" + i), IntNode.valueOf(i));
+            }
+        }
+
+        int hot = 0;
+        for (int i = 0; i < 10; i++) {
+            if (cache.get(MASTER, path("hot" + i)) != null) {
+                hot++;
+            }
+        }
+        assertTrue("Expecting most hot values to be cached, but found " + hot, hot >= 8);
+    }
+
+    @Test
+    public void testExpireAfterAccess() throws InterruptedException {
+        ValueCache cache = new ValueCache(CacheSpec.builder().expireAfterAccess(20, TimeUnit.MILLISECONDS).build());
+
+        cache.put(MASTER, path("path"), IntNode.valueOf(1));
+        assertEquals(IntNode.valueOf(1), cache.get(MASTER, path("path")));
+
+        Thread.sleep(50);
+
+        assertNull(cache.get(MASTER, path("path")));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testConfigurationWithoutCache() throws IOException {
+        Loader loader = TestUtils.getLoader("example1");
+
+        Configuration configuration = Configuration.load(loader, new HashMap<>(), CacheSpec.builder().maximumBytes(0).build());
+
+        Configuration.Projection projection = configuration.project(new HashMap<>());
+
+        assertEquals(10, projection.getInteger("feature.functionality_a"));
+        assertEquals(10, projection.getInteger("feature.functionality_a"));
+    }
+
+    @Test
+    public void testMetrics() {
+        InMemoryYcbMetrics metrics = new InMemoryYcbMetrics();
+        ValueCache cache = new ValueCache(CacheSpec.builder().maximumBytes(2000).build(), metrics);
+
+        assertNull(cache.get(MASTER, path("path0")));
+        for (int i = 0; i < 100; i++) {
+            cache.put(MASTER, path("path" + i), IntNode.valueOf(i));
+        }
+        assertEquals(IntNode.valueOf(99), cache.get(MASTER, path("path99")));
+
+        assertEquals(1, metrics.getHits());
+        assertEquals(1, metrics.getMisses());
+        assertEquals(0.5, metrics.getHitRate(), 0);
+        assertEquals(100 - cache.size(), metrics.getEvictions());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Projecting a path for many contexts: one projection at a time, and all at once (sequentially and in parallel).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BulkProjectionBenchmark extends ConfigBenchmark {
+
+    @Param("10000")
+    public int contexts;
+
+    @Param("key0")
+    public String path;
+
+    private Configuration configuration;
+    private List<Map<String, String>> contextList;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // no cache, so every loop iteration projects again
+        configuration = Configuration.builder().cacheSpec(CacheSpec.builder().maximumBytes(0).build()).load(loader());
+        contextList = configuration.contexts().limit(contexts).map(ContextKey::getContext).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void loop(Blackhole blackhole) {
+        for (Map<String, String> context : contextList) {
+            blackhole.consume(configuration.project(context).getJson(path));
+        }
+    }
+
+    @Benchmark
+    public List<JsonNode> projectAll() {
+        return configuration.projectAll(contextList, path);
+    }
+
+    @Benchmark
+    public List<JsonNode> projectAllParallel() {
+        return configuration.projectAll(contextList, path, ForkJoinPool.commonPool());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Shared parameters of the benchmarks running on a configuration: either the configuration generated by
+ * {@link ConfigGenerator} with the given shape, or the configuration in {@code configDir} when set (the shape
+ * parameters are then ignored).
+ */
+@State(Scope.Benchmark)
+public abstract class ConfigBenchmark {
+
+    @Param("")
+    public String configDir;
+
+    @Param({"3", "5"})
+    public int dimensions;
+
+    @Param("2")
+    public int depth;
+
+    @Param("3")
+    public int fanOut;
+
+    @Param({"100", "1000"})
+    public int bundles;
+
+    @Param("0.1")
+    public double overrideDensity;
+
+    @Param({"10", "100"})
+    public int deltaSize;
+
+    @Param("1")
+    public int nesting;
+
+    @Param("42")
+    public long seed;
+
+    protected File directory() throws IOException {
+        if (!configDir.isEmpty()) {
+            return new File(configDir);
+        }
+        final File directory = Files.createTempDirectory("ycb-benchmark").toFile();
+        directory.deleteOnExit();
+        ConfigGenerator.builder().dimensions(dimensions).depth(depth).fanOut(fanOut).bundles(bundles)
+                .overrideDensity(overrideDensity).deltaSize(deltaSize).nesting(nesting).seed(seed).build().write(directory);
+        for (File file : directory.listFiles()) {
+            file.deleteOnExit();
+        }
+        return directory;
+    }
+
+    protected Loader loader() throws IOException {
+        return new FileSystemLoader(directory());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The merge of deltas before copy on write: every object is copied, and the path of every merged key is built
+ * eagerly. Kept as the baseline of {@link MergeBenchmark}.
+ */
+final class LegacyMerge {
+
+    private LegacyMerge() {
+    }
+
+    static JsonNode mergeDelta(JsonNode delta1, JsonNode delta2, boolean strictMode, List<String> path) {
+        if (delta2 == null || delta2.isNull()) {
+            return delta1;
+        } else if (delta1 != null && delta1.isObject() && delta2.isObject()) {
+            // delta 1 and delta 2 are objects
+
+            final ObjectNode result = new ObjectNode(JsonNodeFactory.instance);
+            for (final Iterator<Map.Entry<String, JsonNode>> fields = delta1.fields(); fields.hasNext();) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+
+                if (delta2.has(field.getKey())) {
+                    final List<String> newPath = new ArrayList<>();
+                    newPath.addAll(path);
+                    newPath.add(field.getKey());
+
+                    result.set(field.getKey(), mergeDelta(field.getValue(), delta2.get(field.getKey()), strictMode, newPath));
+                } else {
+                    result.set(field.getKey(), field.getValue());
+                }
+            }
+            for (final Iterator<Map.Entry<String, JsonNode>> fields = delta2.fields(); fields.hasNext();) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+
+                if (!result.has(field.getKey())) {
+                    final List<String> newPath = new ArrayList<>();
+                    newPath.addAll(path);
+                    newPath.add(field.getKey());
+
+                    if (strictMode) {
+                        throw error(newPath, ValidationError.Reason.MISSING_MASTER_PROPERTY);
+                    }
+
+                    result.set(field.getKey(), field.getValue());
+                }
+            }
+
+            return result;
+        } else {
+            // delta 1 and delta 2 are not objects
+
+            if (strictMode && delta1 != null && !delta2.isNull() && delta1.getClass() != delta2.getClass()) {
+                throw error(path, ValidationError.Reason.REPLACING_DIFFERENT_TYPES);
+            }
+
+            return delta2;
+        }
+    }
+
+    private static LookupTree.ValidationException error(List<String> path, ValidationError.Reason reason) {
+        final LookupTree.ValidationException result = new LookupTree.ValidationException(reason);
+        for (int i = path.size() - 1; i >= 0; i--) {
+            result.prependPath(path.get(i));
+        }
+        return result;
+    }
+}
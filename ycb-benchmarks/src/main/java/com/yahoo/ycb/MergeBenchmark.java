@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merging a delta overriding some keys of a master delta, with the current merge and the legacy one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MergeBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int deltaSize;
+
+    // percentage of the keys of the master delta overridden
+    @Param({"1", "10"})
+    public int overrides;
+
+    @Param("42")
+    public long seed;
+
+    private JsonNode master;
+    private JsonNode delta;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final JsonNodeFactory factory = JsonNodeFactory.instance;
+        final Random random = new Random(seed);
+        final ObjectNode master = factory.objectNode();
+        final ObjectNode delta = factory.objectNode();
+
+        for (int key = 0; key < deltaSize; key++) {
+            final ObjectNode value = master.putObject("key" + key);
+            value.put("enabled", true);
+            value.put("limit", key);
+            value.putObject("nested").put("name", "value " + key);
+        }
+        for (int i = 0; i < Math.max(1, deltaSize * overrides / 100); i++) {
+            final int key = random.nextInt(deltaSize);
+            delta.putObject("key" + key).putObject("nested").put("name", "override " + key);
+        }
+
+        this.master = master;
+        this.delta = delta;
+    }
+
+    @Benchmark
+    public JsonNode merge() {
+        return LookupTree.mergeDelta(master, delta);
+    }
+
+    @Benchmark
+    public JsonNode mergeLegacy() {
+        return LegacyMerge.mergeDelta(master, delta, false, Collections.emptyList());
+    }
+
+    @Benchmark
+    public JsonNode mergeStrict() {
+        return LookupTree.mergeDelta(master, delta, true);
+    }
+
+    @Benchmark
+    public JsonNode mergeStrictLegacy() {
+        return LegacyMerge.mergeDelta(master, delta, true, Collections.emptyList());
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Projecting values of random contexts, with every value cached (cache hits) or with caching disabled (every
+ * lookup merges the deltas of the context).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@OperationsPerInvocation(ProjectionBenchmark.CONTEXTS)
+public class ProjectionBenchmark extends ConfigBenchmark {
+
+    static final int CONTEXTS = 256;
+
+    @Param("key0.limit")
+    public String path;
+
+    @Param("key0.name")
+    public String textPath;
+
+    @Param("key0")
+    public String objectPath;
+
+    private Configuration cached;
+    private Configuration uncached;
+    private final List<Map<String, String>> contexts = new ArrayList<>();
+    private final List<Configuration.Projection> hits = new ArrayList<>();
+    private final List<Configuration.Projection> misses = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final Loader loader = loader();
+        cached = Configuration.builder().load(loader);
+        uncached = Configuration.builder().cacheSpec(CacheSpec.builder().maximumBytes(0).build()).load(loader);
+
+        final List<List<String>> values = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        for (Dimension dimension : loader.getDimensions()) {
+            names.add(dimension.getName());
+            values.add(dimension.traverse());
+        }
+
+        final Random random = new Random(seed);
+        for (int i = 0; i < CONTEXTS; i++) {
+            final Map<String, String> context = new HashMap<>();
+            for (int dimension = 0; dimension < names.size(); dimension++) {
+                final List<String> dimensionValues = values.get(dimension);
+                context.put(names.get(dimension), dimensionValues.get(random.nextInt(dimensionValues.size())));
+            }
+            contexts.add(context);
+            hits.add(cached.project(context));
+            misses.add(uncached.project(context));
+        }
+
+        // every cached value is a hit from now on
+        for (Configuration.Projection projection : hits) {
+            projection.getJson(path);
+            projection.getText(textPath);
+            projection.getJson(objectPath);
+        }
+    }
+
+    @Benchmark
+    public void cacheHit(Blackhole blackhole) {
+        for (Configuration.Projection projection : hits) {
+            blackhole.consume(projection.getJson(path));
+        }
+    }
+
+    @Benchmark
+    public void cacheMiss(Blackhole blackhole) {
+        for (Configuration.Projection projection : misses) {
+            blackhole.consume(projection.getJson(path));
+        }
+    }
+
+    @Benchmark
+    public void cacheMissEach(Blackhole blackhole) {
+        for (Configuration.Projection projection : misses) {
+            blackhole.consume(projection.getJson(path));
+            blackhole.consume(projection.getJson(textPath));
+            blackhole.consume(projection.getJson(objectPath));
+        }
+    }
+
+    @Benchmark
+    public void cacheMissAll(Blackhole blackhole) {
+        final List<String> paths = Arrays.asList(path, textPath, objectPath);
+        for (Configuration.Projection projection : misses) {
+            blackhole.consume(projection.getAll(paths));
+        }
+    }
+
+    @Benchmark
+    public void getText(Blackhole blackhole) {
+        for (Configuration.Projection projection : hits) {
+            blackhole.consume(projection.getText(textPath));
+        }
+    }
+
+    @Benchmark
+    public void getObject(Blackhole blackhole) throws JsonProcessingException {
+        for (Configuration.Projection projection : hits) {
+            blackhole.consume(projection.getObject(objectPath, Map.class));
+        }
+    }
+
+    @Benchmark
+    public void project(Blackhole blackhole) {
+        for (Map<String, String> context : contexts) {
+            blackhole.consume(cached.project(context));
+        }
+    }
+}
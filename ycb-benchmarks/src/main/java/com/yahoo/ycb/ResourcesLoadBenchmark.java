@@ -0,0 +1,30 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and building the example configuration of the tests, from the class path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ResourcesLoadBenchmark {
+
+    @Benchmark
+    public Configuration example1() throws IOException {
+        return Configuration.load(new ResourcesLoader("example1/dimensions.yml",
+                "example1/crumb.yml", "example1/features.yml", "example1/routes.yml",
+                "example1/service_x.yml", "example1/service_y.yml"), Collections.emptyMap());
+    }
+}
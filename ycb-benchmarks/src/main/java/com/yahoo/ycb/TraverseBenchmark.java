@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enumerating the contexts of a configuration, as a list and as a stream.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TraverseBenchmark extends ConfigBenchmark {
+
+    private Configuration configuration;
+    private List<Dimension> allDimensions;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final Loader loader = loader();
+        configuration = Configuration.builder().load(loader);
+        allDimensions = loader.getDimensions();
+    }
+
+    @Benchmark
+    public List<Map<String, String>> traverseContexts() {
+        return configuration.traverseContexts(allDimensions);
+    }
+
+    @Benchmark
+    public long contexts() {
+        return configuration.contexts().count();
+    }
+
+    @Benchmark
+    public long distinctContexts() {
+        return configuration.contexts(true).count();
+    }
+}
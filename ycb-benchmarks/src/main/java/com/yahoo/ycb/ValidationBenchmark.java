@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016 Yahoo inc.
+ * Licensed under the terms of the BSD License. Please see LICENSE file in the project home directory for terms.
+ */
+
+package com.yahoo.ycb;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validating every delta of a configuration, in parallel and on a single thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ValidationBenchmark extends ConfigBenchmark {
+
+    private Configuration configuration;
+    private ForkJoinPool singleThread;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        configuration = Configuration.builder().load(loader());
+        singleThread = new ForkJoinPool(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        singleThread.shutdown();
+    }
+
+    @Benchmark
+    public List<ValidationError> validate() {
+        return configuration.validate();
+    }
+
+    @Benchmark
+    public List<ValidationError> validateSingleThread() {
+        return configuration.validate(ValidationOptions.builder().pool(singleThread).build());
+    }
+}